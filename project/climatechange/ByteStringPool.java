@@ -0,0 +1,207 @@
+package climatechange;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+//
+// Maps raw byte ranges to cached Strings,
+// so a repeating value ( country, code, month ) is only decoded the first time it is seen
+//
+// open addressing hash table, linear probing, resized at half capacity
+//
+
+public class ByteStringPool
+{
+	private static final int INITIAL_CAPACITY = 512;
+	
+	private Charset 	charset;
+	private byte[][] 	keys;
+	private String[] 	values;
+	private int[] 		hashes;
+	private int 		size;
+	
+	
+	//
+	// default constructor, decodes bytes the same way a FileReader would
+	//
+	public ByteStringPool()
+	{
+		this(Charset.defaultCharset());
+	}
+	
+	
+	//
+	// constructor takes in the charset used to decode new entries
+	//
+	public ByteStringPool(Charset charset)
+	{
+		this.charset 	= charset;
+		this.keys 		= new byte[INITIAL_CAPACITY][];
+		this.values 	= new String[INITIAL_CAPACITY];
+		this.hashes 	= new int[INITIAL_CAPACITY];
+		this.size 		= 0;
+	}
+	
+	
+	//
+	// adds a known String to the pool ahead of time ( i.e. month names )
+	// so the same instance is handed back whenever its bytes show up
+	//
+	public void seed(String value)
+	{
+		byte[] bytes = value.getBytes(charset);
+		
+		insert(bytes, hash(ByteBuffer.wrap(bytes), 0, bytes.length), value);
+	}
+	
+	
+	//
+	// returns the String for bytes [start, end) of the buffer
+	// only allocates when those bytes have never been seen before
+	// uses absolute gets, the buffer's position is left untouched
+	//
+	public String get(ByteBuffer buf, int start, int end)
+	{
+		int hash 	= hash(buf, start, end);
+		int mask 	= keys.length - 1;
+		int slot 	= hash & mask;
+		
+		while ( keys[slot] != null )
+		{
+			if ( hashes[slot] == hash && matches(keys[slot], buf, start, end) )
+			{
+				return values[slot];
+			}
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		byte[] bytes = new byte[end - start];
+		
+		for ( int i = 0; i < bytes.length; i++ )
+		{
+			bytes[i] = buf.get(start + i);
+		}
+		
+		String value = new String(bytes, charset);
+		insert(bytes, hash, value);
+		
+		return value;
+	}
+	
+	
+	//
+	// number of distinct Strings in the pool
+	//
+	public int size()
+	{
+		return size;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// same rolling hash String.hashCode uses, but over bytes
+	//
+	private static int hash(ByteBuffer buf, int start, int end)
+	{
+		int h = 0;
+		
+		for ( int i = start; i < end; i++ )
+		{
+			h = 31 * h + buf.get(i);
+		}
+		
+		// spreads the high bits down, since the table is indexed by the low bits
+		return h ^ (h >>> 16);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// checks if the stored key has exactly the bytes in [start, end)
+	//
+	private static boolean matches(byte[] key, ByteBuffer buf, int start, int end)
+	{
+		if ( key.length != end - start )
+		{
+			return false;
+		}
+		
+		for ( int i = 0; i < key.length; i++ )
+		{
+			if ( key[i] != buf.get(start + i) )
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// puts a new entry in the table, growing it first if it is half full
+	//
+	private void insert(byte[] key, int hash, String value)
+	{
+		if ( (size + 1) * 2 > keys.length )
+		{
+			resize();
+		}
+		
+		int mask = keys.length - 1;
+		int slot = hash & mask;
+		
+		while ( keys[slot] != null )
+		{
+			if ( hashes[slot] == hash && matches(keys[slot], ByteBuffer.wrap(key), 0, key.length) )
+			{
+				return;
+			}
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		keys[slot] 		= key;
+		values[slot] 	= value;
+		hashes[slot] 	= hash;
+		size++;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// doubles the table and re-inserts every entry
+	//
+	private void resize()
+	{
+		byte[][] 	oldKeys 	= keys;
+		String[] 	oldValues 	= values;
+		int[] 		oldHashes 	= hashes;
+		
+		keys 	= new byte[oldKeys.length * 2][];
+		values 	= new String[oldKeys.length * 2];
+		hashes 	= new int[oldKeys.length * 2];
+		
+		int mask = keys.length - 1;
+		
+		for ( int i = 0; i < oldKeys.length; i++ )
+		{
+			if ( oldKeys[i] != null )
+			{
+				int slot = oldHashes[i] & mask;
+				
+				while ( keys[slot] != null )
+				{
+					slot = (slot + 1) & mask;
+				}
+				
+				keys[slot] 		= oldKeys[i];
+				values[slot] 	= oldValues[i];
+				hashes[slot] 	= oldHashes[i];
+			}
+		}
+	}
+}
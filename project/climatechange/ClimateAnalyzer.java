@@ -1,11 +1,21 @@
 package climatechange;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.InputMismatchException;
+import java.util.List;
 import java.util.Scanner;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 public class ClimateAnalyzer implements IClimateAnalyzer{
 	public static final String[] months = 
@@ -13,313 +23,524 @@ public class ClimateAnalyzer implements IClimateAnalyzer{
 		 "Jun", "Jul", "Aug", "Sep", "Oct", "Nov"};
 	
 	private WeatherIO IO;
-	private ArrayList<ITemperature> baseData;
+	
+	// rows are stored by column, queries get views of the rows they return ( see TemperatureTable )
+	private TemperatureTable baseData;
+	
+	// one partition per data file, in the order their rows are in baseData
+	private ArrayList<DataPartition> partitions;
+	
+	// baseData's rows by ( country, year, month )
+	private TemperatureKeyIndex keyIndex;
+	
+	// baseData's row ids lowest temperature first, overall and per country, for A-3 and B-3
+	private TemperatureSortedIndex sortedIndex;
+	
+	// lowest, highest, count and sum per country, country + year and country + month, for A-1, A-2 and A-4
+	private TemperatureAggregates aggregates;
+	
+	// quantile sketches per country, month and country + month, for percentiles
+	private TemperatureQuantiles quantiles;
+	
+	// every C-1 delta, made by the first C-1 query and updated as rows are appended
+	// ( null if the data has too many years for it, then C-1 works them out from the rows )
+	private TemperatureDeltaMatrix deltaMatrix;
+	private boolean deltaMatrixBuilt;
+	
+	// temperature, year, month and country statistics of every block of baseData's rows, to skip blocks in scans
+	private TemperatureZoneMap zoneMap;
+	
+	// baseData's rows by month, year and country, as compressed bitmaps that queries AND together
+	private TemperatureBitmapIndex bitmapIndex;
+	
+	// results of A-3, B-1, B-2, B-3 and C-1 by their arguments, dropped whenever rows are appended
+	private QueryResultCache cache;
+	
+	// runs the queries A-1 to B-3 are made of, using the indexes above ( see TemperatureQuery )
+	private TemperatureQueryEngine queries;
+	
+	// data file, and how far into it has been read ( -1 if it can't be followed, i.e. a snapshot or .gz )
+	private String filename;
+	private int parallelism;
+	private long followOffset;
+	private ScheduledExecutorService followTimer;
 	
 	// baseData will be null if file is empty, 
 	// or if a fileIO Exception has occurred with the given file
+	// file is memory mapped and parsed from bytes, see WeatherIO.readDataFromMappedFile
 	public ClimateAnalyzer(String filename)
+	{
+		this(filename, Runtime.getRuntime().availableProcessors());
+	}
+	
+	
+	//
+	// same as above, but sets how many threads are used to parse the file
+	// ( 1 reads it serially )
+	// if the file is a binary snapshot ( see WeatherSnapshot ) it is loaded directly instead
+	// and a .gz file is decompressed while it is parsed ( see GzipWeatherReader )
+	//
+	// filename can also be a directory of data files ( i.e. one per year or per country ),
+	// each file is loaded in parallel and kept as a partition ( see DataPartition ),
+	// so queries for a year or country only look at the files that can have it
+	//
+	public ClimateAnalyzer(String filename, int parallelism)
 	{
 		IO = new WeatherIO();
-		baseData = IO.readDataFromFile(filename);
+		
+		this.filename 		= filename;
+		this.parallelism 	= parallelism;
+		this.followOffset 	= -1;
+		this.partitions 	= new ArrayList<DataPartition>();
+		this.cache 			= new QueryResultCache();
+		
+		if ( new File(filename).isDirectory() )
+		{
+			baseData = loadDirectory(filename);
+		}
+		else if ( WeatherSnapshot.isSnapshot(filename) || filename.endsWith(".gz") )
+		{
+			baseData = loadFile(filename, parallelism);
+		}
+		else
+		{
+			// remembers where the read stopped, so appended rows can be picked up later ( see refresh )
+			// a last line without a line break is read too, and followOffset goes past it
+			baseData 		= new TemperatureTable();
+			followOffset 	= IO.readDataFromMappedFile(filename, 0, parallelism, baseData);
+			
+			if ( followOffset < 0 )
+			{
+				baseData = null;
+			}
+		}
+		
+		if ( baseData != null )
+		{
+			baseData.trimToSize();
+			
+			// a single file is a single partition
+			if ( partitions.isEmpty() )
+			{
+				DataPartition partition = new DataPartition(filename, 0);
+				partition.addAll(baseData);
+				partitions.add(partition);
+			}
+			
+			keyIndex 	= new TemperatureKeyIndex(baseData);
+			aggregates 	= new TemperatureAggregates(baseData);
+			quantiles 	= new TemperatureQuantiles(baseData);
+			sortedIndex = new TemperatureSortedIndex(baseData);
+			zoneMap 	= new TemperatureZoneMap(baseData);
+			bitmapIndex = new TemperatureBitmapIndex(baseData);
+			queries 	= new TemperatureQueryEngine(baseData, partitions, keyIndex, aggregates, sortedIndex, 
+					zoneMap, bitmapIndex);
+			
+			// the B tasks over the whole data set are split over the same number of threads as parsing
+			queries.setParallelism(parallelism, TemperatureQueryEngine.DEFAULT_PARALLEL_THRESHOLD);
+		}
 	}
 	
 	
 	//
-	// ( Helper Method )
-	// Sorts a given ArrayList by the order defined in the compareTo method
-	// Generally, from low to high temperature
+	// (Helper Method)
+	// loads a single data file, whichever kind it is ( snapshot, .gz, or csv )
+	// returns null if it couldn't be read
 	//
-	private ArrayList<ITemperature> getSorted ( ArrayList<ITemperature> data)
+	private TemperatureTable loadFile(String file, int threads)
 	{
-		TreeDataSet<ITemperature> sortedData = new TreeDataSet<ITemperature>(data);
+		if ( WeatherSnapshot.isSnapshot(file) )
+		{
+			return IO.readDataFromSnapshot(file);
+		}
+		else if ( file.endsWith(".gz") )
+		{
+			return IO.readDataFromGzipFile(file);
+		}
 		
-		return sortedData.getSortedList();
+		return IO.readDataFromMappedFile(file, threads);
 	}
 	
 	
 	//
-	// (Helper Method) 
-	// Given a month and data set, 
-	// returns an ArrayList containing all Temperature objects with that month
-	// ArrayList is "unsorted"
+	// (Helper Method)
+	// loads every data file ( .csv, .gz, or snapshot ) in the directory, 'parallelism' files at a time
+	// files are added in name order, each one as its own partition
+	// returns null if the directory or any of its data files couldn't be read
 	//
-	private ArrayList<ITemperature> getFilteredByMonth ( ArrayList<ITemperature> data, int month ) 
-			throws IndexOutOfBoundsException, IllegalArgumentException
+	private TemperatureTable loadDirectory(String directory)
 	{
-		if ( month < 1 || month > 12)
+		File[] files = new File(directory).listFiles();
+		
+		if ( files == null )
 		{
-			throw new IndexOutOfBoundsException("Input for Month, '" + month + 
-					"' is outside of the range 1-12, try again");
+			System.out.println("Given directory couldn't be read!");
+			return null;
 		}
 		
-		// Converts Int month into String month, 
-		// for 1(Jan) - 12(Dec), months%12 makes sure it doesn't exceed the limits of the array
-		String monthAsString = months[month%12];
-		HashDataSet<ITemperature> filteredData = new HashDataSet<ITemperature>();
+		Arrays.sort(files);
+		
+		ArrayList<File> dataFiles = new ArrayList<File>();
 		
-		// Iterates entire length of given data, checks if it has the same month
-		// adding to HashDataSet
-		for ( ITemperature t : data)
+		for ( File f : files )
 		{
-			boolean hasMonth = t.getMonth().equals( monthAsString);
+			String name = f.getName();
 			
-			if ( hasMonth ) {
-				filteredData.add(t);
+			if ( f.isFile() && ( name.endsWith(".csv") || name.endsWith(".gz") 
+					|| WeatherSnapshot.isSnapshot( f.getPath() ) ) )
+			{
+				dataFiles.add(f);
 			}
 		}
 		
-		if ( filteredData.size() <= 0)
+		ForkJoinPool 						pool 	= new ForkJoinPool(parallelism);
+		ArrayList<Future<TemperatureTable>> loads 	= new ArrayList<Future<TemperatureTable>>();
+		
+		try
 		{
-			throw new IllegalArgumentException(
-				"No such Temperature for given month, '" + monthAsString +"' was found, try again" );
+			for ( final File f : dataFiles )
+			{
+				loads.add( pool.submit( new Callable<TemperatureTable>()
+				{
+					@Override
+					public TemperatureTable call()
+					{
+						return loadFile(f.getPath(), 1);
+					}
+				}));
+			}
+			
+			TemperatureTable data = new TemperatureTable();
+			
+			for ( int i = 0; i < loads.size(); i++ )
+			{
+				TemperatureTable rows = loads.get(i).get();
+				
+				if ( rows == null )
+				{
+					return null;
+				}
+				
+				DataPartition partition = new DataPartition( dataFiles.get(i).getPath(), data.size() );
+				partition.addAll(rows);
+				partitions.add(partition);
+				
+				data.addAll(rows);
+			}
+			
+			return data;
+		}
+		catch (InterruptedException x)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (ExecutionException y)
+		{
+			y.getCause().printStackTrace();
+			return null;
+		}
+		finally
+		{
+			pool.shutdown();
 		}
-		
-		return filteredData.getList();
 	}
 	
 	
 	//
-	// (Helper Method) 
-	// Given a year and data set,
-	// returns an ArrayList containing all Temperature objects with that year
-	// ArrayList is "unsorted"
+	// Reads only the rows appended to the data file since it was last read,
+	// and adds them to the data already loaded ( nothing is re-read )
+	// returns the number of new rows, 0 if there were none or the file couldn't be read
 	//
-	private ArrayList<ITemperature> getFilteredByYear ( ArrayList<ITemperature> data, int year ) 
-			throws IllegalArgumentException
+	public synchronized int refresh() throws IllegalStateException
 	{
-		HashDataSet<ITemperature> filteredData = new HashDataSet<ITemperature>();
-		
-		for ( ITemperature t : data )
+		if ( followOffset < 0 )
 		{
-			boolean hasYear = t.getYear() == year;
-			
-			if ( hasYear ) 
-			{
-				filteredData.add(t);
-			}
+			throw new IllegalStateException("Only a csv data file that loaded successfully can be followed");
 		}
 		
-		// Checks for invalid inputs, years should be realistic values 
-		if ( filteredData.size() <= 0)
+		TemperatureTable 	newData = new TemperatureTable();
+		long 				offset 	= IO.readDataFromMappedFile(filename, followOffset, parallelism, newData);
+		
+		// on an error nothing is added, the same rows are tried again next time
+		if ( offset < 0 )
 		{
-			throw new IllegalArgumentException(
-					"No such temperature in the given year, '" + year +"', was found, try again");
+			return 0;
 		}
 		
-		return filteredData.getList();
+		followOffset = offset;
+		appendData(newData);
+		
+		return newData.size();
 	}
 	
 	
 	//
-	// (Helper Method) 
-	// Given a country and data set,
-	// returns an ArrayList containing all Temperature objects with that country
-	// ArrayList is "unsorted"
+	// calls refresh every periodMillis on a background thread, until stopFollowing is called
 	//
-	private ArrayList<ITemperature> getFilteredByCountry ( ArrayList<ITemperature> data, String country ) 
-			throws IllegalArgumentException
+	public synchronized void startFollowing(long periodMillis) throws IllegalStateException
 	{
-		HashDataSet<ITemperature> filteredData = new HashDataSet<ITemperature>();
+		if ( followOffset < 0 )
+		{
+			throw new IllegalStateException("Only a csv data file that loaded successfully can be followed");
+		}
+		
+		stopFollowing();
 		
-		for ( ITemperature t : data ) 
+		followTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
 		{
-			boolean hasCountry = t.getCountry().equalsIgnoreCase(country);
-			
-			if ( hasCountry )
+			@Override
+			public Thread newThread(Runnable r)
 			{
-				filteredData.add(t);
+				Thread thread = new Thread(r, "ClimateAnalyzer-follow");
+				thread.setDaemon(true);
+				
+				return thread;
 			}
+		});
+		
+		followTimer.scheduleWithFixedDelay(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				refresh();
+			}
+		}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	
+	//
+	// stops the background refresh started by startFollowing, if there is one
+	//
+	public synchronized void stopFollowing()
+	{
+		if ( followTimer != null )
+		{
+			followTimer.shutdownNow();
+			followTimer = null;
 		}
+	}
+	
+	
+	//
+	// ( Helper Method )
+	// adds newly read rows to the data set
+	// every query reads baseData directly, so they see the new rows right away
+	// ( queries and refresh are synchronized, a query never sees half an append )
+	//
+	private void appendData(TemperatureTable newData)
+	{
+		baseData.addAll(newData);
+		
+		// only a single file can be followed, so it is always the last partition
+		partitions.get( partitions.size() - 1 ).addAll(newData);
+		keyIndex.update();
+		aggregates.update();
+		quantiles.update();
+		sortedIndex.update();
+		zoneMap.update();
+		bitmapIndex.update();
+		
+		// every cached result could have changed
+		cache.clear();
 		
-		// Checks for invalid inputs, 
-		// if user inputs a country that doesn't exist, set will be empty
-		if ( filteredData.size() <= 0)
+		// only made again by the next C-1 if the new rows don't fit in it ( i.e. an earlier year )
+		if ( deltaMatrix != null && ! deltaMatrix.update() )
 		{
-			throw new IllegalArgumentException(
-					"No such temperature with given country, '" + country + "', was found, try again");
+			deltaMatrix 		= null;
+			deltaMatrixBuilt 	= false;
 		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// a copy of the cached result of the method ( i.e. "B1" ) with those arguments,
+	// or null if it isn't cached
+	//
+	private ArrayList<ITemperature> getCached(Object... key)
+	{
+		List<ITemperature> cached = cache.get(key);
 		
-		return filteredData.getList();
+		return ( cached == null ) ? null : new ArrayList<ITemperature>(cached);
 	}
 	
 	
 	//
-	// (Helper Method) 
-	// Given a temperature range and data set,
-	// returns an ArrayList containing all Temperature objects within that range
-	// ArrayList is "unsorted"
+	// (Helper Method)
+	// caches a copy of the result of the method with those arguments, returns the result
 	//
-	private ArrayList<ITemperature> getFilteredByRange ( 
-			double rangeLowTemp, double rangeHighTemp, 
-			ArrayList<ITemperature> data) 
-					throws IllegalArgumentException
+	private ArrayList<ITemperature> putCached(ArrayList<ITemperature> result, Object... key)
 	{
-		HashDataSet<ITemperature> filteredData = new HashDataSet<ITemperature>();
+		cache.put(result, key);
 		
-		for ( ITemperature t : data )
+		return result;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// month id ( see TemperatureTable ) for 1(Jan) - 12(Dec)
+	//
+	private int getCheckedMonthId(int month) throws IndexOutOfBoundsException
+	{
+		if ( month < 1 || month > 12)
 		{
-			boolean isBetweenRange 	= ( t.getTemperature(false) >= rangeLowTemp ) 
-									&& ( t.getTemperature(false) <= rangeHighTemp );
-			
-			if ( isBetweenRange )
-			{
-				filteredData.add(t);
-			}
+			throw new IndexOutOfBoundsException("Input for Month, '" + month + 
+					"' is outside of the range 1-12, try again");
 		}
 		
+		return baseData.getMonthDictionary().indexOf( months[month%12] );
+	}
+	
+	
+	//
+	// (Helper Method) 
+	// Given the rows found within a temperature range ( see sortedIndex ),
+	// returns them as they are
+	//
+	private ArrayList<ITemperature> getCheckedRange ( ArrayList<ITemperature> data ) 
+					throws IllegalArgumentException
+	{
 		// Checks for invalid input
 		// Makes sure user inputs a realistic Temperature range ( something that exists)
-		if ( filteredData.size() <= 0)
+		if ( data.size() <= 0)
 		{
 			throw new IllegalArgumentException(
 					"No such temperature within the given temperature range was found, try again");
 		}
 		
-		return filteredData.getList();
+		return data;
 	}
 	
 	
 	//
 	// (Helper Method)
-	// Given a pre-sorted data set,
-	// checks if Temperature object has a unique country ( isn't already in the set)
-	// if so, add it, else don't
-	// return the data containing temperature objects with unique countries, sorted low to high
-	//
-	private ArrayList<ITemperature> getUniqueCountries(ArrayList<ITemperature> data)
+	// Given a year and month id, gets the min and max rows of each country in them ( see keyIndex )
+	// throws the same exception as getFilteredByYear if there aren't any
+	// 
+	private HashMap<String, int[]> getMinMaxRows ( int year, int monthId ) 
+			throws IllegalArgumentException
 	{
-		// TreeSet for ensuring the data is ordered
-		// HashSet for storing known Countries that are already in the TreeSet
-		TreeDataSet<ITemperature> 	filteredData	 		= new TreeDataSet<ITemperature>();
-		HashSet<String> 			existingCountries 	= new HashSet<String>();
+		HashMap<String, int[]> minMaxRows = keyIndex.getMinMaxRows(year, monthId);
 		
-		for ( ITemperature t : data ) 
+		if ( minMaxRows.isEmpty() )
 		{
-			boolean hasDuplicateCountry = existingCountries.contains( t.getCountry() );
-			
-			if ( ! ( hasDuplicateCountry) )
-			{
-				filteredData.add(t);
-				existingCountries.add( t.getCountry() );
-			}
+			throw new IllegalArgumentException(
+					"No such temperature in the given year, '" + year +"', was found, try again");
 		}
 		
-		return filteredData.getSortedList();
+		return minMaxRows;
 	}
 	
 	
 	//
 	// (Helper Method)
-	// returns all elements of a given ArrayList from start(inclusive) to end (exclusive)
-	// If start or end exceed what's expected, then just return what's left in the array
+	// makes sure a percentile is from 0 to 1
 	//
-	private ArrayList<ITemperature> getSubList( int start, int end, ArrayList<ITemperature> data)
+	private void checkPercentile ( double p ) throws IllegalArgumentException
 	{
-		ArrayList<ITemperature> subData = new ArrayList<ITemperature>();
-		
-		if ( (data.size() <= 0) || (end > data.size()) || (start < 0) ) 
+		// NaN isn't in the range either
+		if ( ! ( p >= 0 && p <= 1 ) )
 		{
-			return data;
-		}
-
-		for ( int index = start; index < end; index++)
-		{
-			subData.add(data.get(index));
+			throw new IllegalArgumentException(
+					"Input for percentile, '" + p + "', is outside of the range 0-1, try again");
 		}
-		
-		return subData;
 	}
 	
 	
 	//
 	// (Helper Method)
-	// Given a pre-sorted data set, gets the min and max values of each country inside
-	// returns an ArrayList of the min and max temperature values of all countries
-	// 
-	private ArrayList<ITemperature> getCountryMinMax ( ArrayList<ITemperature> data)
+	// true if any partition has a row with the month ( i.e. "Jan" )
+	//
+	private boolean hasMonth ( String month )
 	{
-		TreeDataSet<ITemperature> sortedData = new TreeDataSet<ITemperature>();
-		
-		for ( ITemperature t : data)
+		for ( DataPartition p : partitions )
 		{
-			ArrayList<ITemperature> temp =  getFilteredByCountry(data, t.getCountry());
-			
-			ITemperature min = temp.get(0);
-			ITemperature max = temp.get(temp.size() - 1);
-			
-			// Removes possibility for duplicates for a country
-			if (!( min.equals(max)  || sortedData.contains(min) || sortedData.contains(max))) {
-				sortedData.add(min);
-				sortedData.add(max);
-			} else if ( min.equals(max) ) {
-				sortedData.add(min);
+			if ( p.mayContainMonth(month) )
+			{
+				return true;
 			}
 		}
 		
-		return sortedData.getSortedList();
+		return false;
+	}
+	
+	
+	//
+	// Given a query, returns the rows that match all of its predicates, sorted low to high
+	// repeated readings only once, and no more than the query's limit
+	// ( i.e. getQueryRows( new TemperatureQuery().country("Chad").month(7).limit(5) ) )
+	//
+	public synchronized ArrayList<ITemperature> getQueryRows(TemperatureQuery query)
+	{
+		return queries.getRows(query);
+	}
+	
+	
+	//
+	// Given a query, returns the lowest and highest readings, count and mean of the rows that match,
+	// or null if none do
+	//
+	public synchronized TemperatureSummary getQuerySummary(TemperatureQuery query)
+	{
+		return queries.getSummary(query);
+	}
+	
+	
+	//
+	// Given a query, the lowest ( or highest ) matching reading of each country,
+	// returns the K lowest ( or highest ) of those, sorted low to high
+	//
+	public synchronized ArrayList<ITemperature> getQueryTop(TemperatureQuery query, int k, boolean highest)
+			throws IllegalArgumentException
+	{
+		return queries.getTop(query, k, highest);
 	}
 	
 	
 	//
 	// A-1 LOWEST
-	// Given the country and month, filter base set of data by country, then by month
-	// Sorts the array from low to high temperatures
-	// returns the first item in the array ( lowest )
+	// Given the country and month, returns the lowest reading of that month,
+	// kept up to date in aggregates, nothing is filtered or sorted
 	//
-	public ITemperature getLowestTempByMonth(String country, int month) 
+	public synchronized ITemperature getLowestTempByMonth(String country, int month) 
 			throws IllegalArgumentException, IndexOutOfBoundsException
 	{
-		ArrayList<ITemperature> sortedData = getFilteredByCountry(baseData, country);
-								sortedData = getFilteredByMonth(sortedData, month);
-								sortedData = getSorted(sortedData);
-		
-		return sortedData.get(0);
+		return getTempSummaryByMonth(country, month).getLowest();
 	}
 	
 	
 	//
 	// A-1 HIGHEST
-	// basically the same as the previous, but returns the last item in the array ( highest )
+	// basically the same as the previous, but returns the highest reading
 	//
-	public ITemperature getHighestTempByMonth(String country, int month) 
+	public synchronized ITemperature getHighestTempByMonth(String country, int month) 
 			throws IllegalArgumentException, IndexOutOfBoundsException
 	{
-		ArrayList<ITemperature> sortedData = getFilteredByCountry(baseData, country);
-								sortedData = getFilteredByMonth(sortedData, month);
-								sortedData = getSorted(sortedData);
-								
-		return sortedData.get( sortedData.size() - 1 );
+		return getTempSummaryByMonth(country, month).getHighest();
 	}
 	
 	
 	//
 	// A-2 LOWEST
-	// Given country and year, filter the base data set by country, then by year
-	// After filtering, sort array from low to high temperature
-	// returns the first element in the array ( lowest )
+	// Given country and year, returns the lowest reading of that year ( from aggregates )
 	//
-	public ITemperature getLowestTempByYear(String country, int year) 
+	public synchronized ITemperature getLowestTempByYear(String country, int year) 
 			throws IllegalArgumentException
 	{
-		ArrayList<ITemperature> sortedData = getFilteredByCountry(baseData, country);
-								sortedData = getFilteredByYear(sortedData, year);
-								sortedData = getSorted(sortedData);
-								
-		return sortedData.get(0);
+		return getTempSummaryByYear(country, year).getLowest();
 	}
 	
 	//
 	// A-2 HIGHEST
-	// Basically the same as the previous, but returns last item in the array( highest)
+	// Basically the same as the previous, but returns the highest reading
 	//
-	public ITemperature getHighestTempByYear(String country, int year) 
+	public synchronized ITemperature getHighestTempByYear(String country, int year) 
 			throws IllegalArgumentException
 	{
-		ArrayList<ITemperature> sortedData = getFilteredByCountry(baseData, country);
-								sortedData = getFilteredByYear(sortedData, year);
-								sortedData = getSorted(sortedData);
-								
-		return sortedData.get( sortedData.size() - 1 );
+		return getTempSummaryByYear(country, year).getHighest();
 	}
 	
 	
@@ -329,14 +550,27 @@ public class ClimateAnalyzer implements IClimateAnalyzer{
 	// then sort data from low to high temps
 	// returns sorted data
 	//
-	public TreeSet<ITemperature> getTempWithinRange(String country, 
+	public synchronized TreeSet<ITemperature> getTempWithinRange(String country, 
 			double rangeLowTemp, 
 			double rangeHighTemp)
 				throws IllegalArgumentException
 	{
-		ArrayList<ITemperature> sortedData = getFilteredByCountry(baseData, country);
-								sortedData = getFilteredByRange(rangeLowTemp, rangeHighTemp, sortedData);
-								sortedData = getSorted(sortedData);
+		// if user inputs a country that doesn't exist
+		if ( ! keyIndex.hasCountry(country) )
+		{
+			throw new IllegalArgumentException(
+					"No such temperature with given country, '" + country + "', was found, try again");
+		}
+		
+		ArrayList<ITemperature> sortedData = getCached("A3", country, rangeLowTemp, rangeHighTemp);
+		
+		if ( sortedData == null )
+		{
+			TemperatureQuery query = new TemperatureQuery().country(country).range(rangeLowTemp, rangeHighTemp);
+			
+			sortedData = getCheckedRange( getQueryRows(query) );
+			putCached(sortedData, "A3", country, rangeLowTemp, rangeHighTemp);
+		}
 								
 		return new TreeSet<ITemperature>(sortedData);
 	}
@@ -344,119 +578,311 @@ public class ClimateAnalyzer implements IClimateAnalyzer{
 	
 	//
 	// A-4
-	// Given country, filter by country
-	// Sort the data array from low to high temp
-	// return first element in the array ( lowest )
+	// Given country, returns its lowest reading ( from aggregates )
 	//
-	public ITemperature getLowestTempYearByCountry(String country) 
+	public synchronized ITemperature getLowestTempYearByCountry(String country) 
 			throws IllegalArgumentException
 	{
-		ArrayList<ITemperature> sortedData = getFilteredByCountry(baseData, country);
-								sortedData = getSorted(sortedData);
-								
-		return sortedData.get(0);
+		return getTempSummaryByCountry(country).getLowest();
 	}
 	
 	
 	//
 	// A-4
 	// Basically the previous method, but
-	// return last element in the array ( highest)
+	// returns the highest reading
 	//
-	public ITemperature getHighestTempYearByCountry(String country) 
+	public synchronized ITemperature getHighestTempYearByCountry(String country) 
 			throws IllegalArgumentException
 	{
-		ArrayList<ITemperature> sortedData = getFilteredByCountry(baseData, country);
-								sortedData = getSorted(sortedData);
-								
-		return sortedData.get( sortedData.size() - 1 );
+		return getTempSummaryByCountry(country).getHighest();
+	}
+	
+	
+	//
+	// Given country, returns the lowest and highest readings, count and mean of all its data
+	// looked up in aggregates, which are kept up to date as rows are appended
+	//
+	public synchronized TemperatureSummary getTempSummaryByCountry(String country) 
+			throws IllegalArgumentException
+	{
+		TemperatureSummary summary = getQuerySummary( new TemperatureQuery().country(country) );
+		
+		// if user inputs a country that doesn't exist, there is no summary
+		if ( summary == null )
+		{
+			throw new IllegalArgumentException(
+					"No such temperature with given country, '" + country + "', was found, try again");
+		}
+		
+		return summary;
+	}
+	
+	
+	//
+	// Given country and month, the same as above for the data of that month ( in every year )
+	// checks the country, then the month, like A-1
+	//
+	public synchronized TemperatureSummary getTempSummaryByMonth(String country, int month) 
+			throws IllegalArgumentException, IndexOutOfBoundsException
+	{
+		getTempSummaryByCountry(country);
+		
+		TemperatureQuery 	query 			= new TemperatureQuery().country(country).month(month);
+		String 				monthAsString 	= months[month%12];
+		TemperatureSummary 	summary 		= getQuerySummary(query);
+		
+		if ( summary == null )
+		{
+			throw new IllegalArgumentException(
+				"No such Temperature for given month, '" + monthAsString +"' was found, try again" );
+		}
+		
+		return summary;
+	}
+	
+	
+	//
+	// Given country and year, the same as above for the data of that year
+	// checks the country, then the year, like A-2
+	//
+	public synchronized TemperatureSummary getTempSummaryByYear(String country, int year) 
+			throws IllegalArgumentException
+	{
+		getTempSummaryByCountry(country);
+		
+		TemperatureSummary summary = getQuerySummary( new TemperatureQuery().country(country).year(year) );
+		
+		if ( summary == null )
+		{
+			throw new IllegalArgumentException(
+					"No such temperature in the given year, '" + year +"', was found, try again");
+		}
+		
+		return summary;
+	}
+	
+	
+	//
+	// Given a country, month and p ( 0 - 1, i.e. 0.5 for the median, 0.9 for the 90th percentile ),
+	// returns the temperature ( Celsius ) that p of the country's readings in that month ( every year ) are at or below
+	// answered from a quantile sketch kept as the data is loaded, nothing is sorted ( see TemperatureQuantiles ),
+	// so it can be off by about 1% of the readings in rank
+	// checks p, then the country, then the month, like A-1
+	//
+	public synchronized double getTemperaturePercentile(String country, int month, double p) 
+			throws IllegalArgumentException, IndexOutOfBoundsException
+	{
+		getTemperaturePercentile(country, p);
+		
+		int 			monthId = getCheckedMonthId(month);
+		QuantileSketch 	sketch 	= ( monthId == -1 ) ? null : quantiles.getByCountryMonth(country, monthId);
+		
+		if ( sketch == null )
+		{
+			throw new IllegalArgumentException(
+				"No such Temperature for given month, '" + months[month%12] +"' was found, try again" );
+		}
+		
+		return sketch.getQuantile(p);
+	}
+	
+	
+	//
+	// Given a country and p, the same as above for all of the country's readings
+	//
+	public synchronized double getTemperaturePercentile(String country, double p) 
+			throws IllegalArgumentException
+	{
+		checkPercentile(p);
+		
+		QuantileSketch sketch = quantiles.getByCountry(country);
+		
+		// if user inputs a country that doesn't exist
+		if ( sketch == null )
+		{
+			throw new IllegalArgumentException(
+					"No such temperature with given country, '" + country + "', was found, try again");
+		}
+		
+		return sketch.getQuantile(p);
+	}
+	
+	
+	//
+	// Given a month and p, the same as above for every country's readings in that month
+	//
+	public synchronized double getTemperaturePercentile(int month, double p) 
+			throws IllegalArgumentException, IndexOutOfBoundsException
+	{
+		checkPercentile(p);
+		
+		int 			monthId = getCheckedMonthId(month);
+		QuantileSketch 	sketch 	= ( monthId == -1 ) ? null : quantiles.getByMonth(monthId);
+		
+		if ( sketch == null )
+		{
+			throw new IllegalArgumentException(
+				"No such Temperature for given month, '" + months[month%12] +"' was found, try again" );
+		}
+		
+		return sketch.getQuantile(p);
+	}
+	
+	
+	//
+	// Given p, the same as above for every reading
+	//
+	public synchronized double getTemperaturePercentile(double p) 
+			throws IllegalArgumentException
+	{
+		checkPercentile(p);
+		
+		QuantileSketch sketch = quantiles.getAll();
+		
+		if ( sketch.getCount() == 0 )
+		{
+			throw new IllegalArgumentException("No temperature readings were loaded");
+		}
+		
+		return sketch.getQuantile(p);
 	}
 	
 	
 	//
 	// B1
-	// Filters data by month, then sorts it.
-	// retrieves the lowest temperature values for a country,
-	// removes every other instance of that country
-	// returns the first 10 elements in the list, 
+	// the lowest temperature of each country in the given month,
+	// returns the 10 lowest of those, sorted low to high
 	//
-	// will return whatever is in the array if there are less than 10 elements but more than 0
+	// will return whatever there is if there are less than 10 countries but more than 0
 	//
-	public ArrayList<ITemperature> allCountriesGetTop10LowestTemp(int month) 
+	public synchronized ArrayList<ITemperature> allCountriesGetTop10LowestTemp(int month) 
 			throws IndexOutOfBoundsException, IllegalArgumentException
 	{
-		ArrayList<ITemperature> sortedData = getFilteredByMonth(baseData, month);
-								sortedData = getSorted(sortedData);
-								sortedData = getUniqueCountries(sortedData);
-								
-		int start 	= 0;
-		int end 	= 10;
-		
-		return getSubList(start, end, sortedData);
+		return allCountriesGetTopKLowestTemp(month, 10);
 	}
 	
 	
 	//
 	// B1
-	// source for reverse method : 
-	// https://docs.oracle.com/javase/8/docs/api/java/util/Collections.html 
+	// basically the previous method, but with the highest temperature of each country,
+	// returns the 10 highest of those, still sorted low to high
 	//
-	// basically the previous method, but after sorting normally,
-	// reverses list to go from high-low, removes duplicate countries, then retrieves last 10 elements
+	public synchronized ArrayList<ITemperature> allCountriesGetTop10HighestTemp(int month) 
+			throws IndexOutOfBoundsException, IllegalArgumentException
+	{
+		return allCountriesGetTopKHighestTemp(month, 10);
+	}
+	
+	
 	//
-	public ArrayList<ITemperature> allCountriesGetTop10HighestTemp(int month) 
+	// B1
+	// the same as allCountriesGetTop10LowestTemp(month), for the K lowest countries
+	//
+	public synchronized ArrayList<ITemperature> allCountriesGetTopKLowestTemp(int month, int k) 
 			throws IndexOutOfBoundsException, IllegalArgumentException
 	{
-		// filters out all other months in the data set and sorts it from low-high
-		ArrayList<ITemperature> sortedData = getFilteredByMonth(baseData, month);
-								sortedData = getSorted(sortedData);
-								
-		// currently sorted from low-high, this swaps it to high-low,
-		Collections.reverse(sortedData);
-		// filters out objects with the same country, automatically sorts it low-high
-		sortedData = getUniqueCountries(sortedData);
-		
-		int start 	= sortedData.size() - 10;
-		int end 	= sortedData.size();
-		
-		return getSubList(start, end, sortedData);
+		return getTopByMonth(month, k, false);
+	}
+	
+	
+	//
+	// B1
+	// the same as allCountriesGetTop10HighestTemp(month), for the K highest countries
+	//
+	public synchronized ArrayList<ITemperature> allCountriesGetTopKHighestTemp(int month, int k) 
+			throws IndexOutOfBoundsException, IllegalArgumentException
+	{
+		return getTopByMonth(month, k, true);
 	}
 	
 	
 	//
 	// B2
-	// sorts the base data, then removes repeating countries except the lowest ones
-	// returns first 10 in the list
+	// the lowest temperature of each country in the whole data set
+	// returns the 10 lowest of those
 	//
-	public ArrayList<ITemperature> allCountriesGetTop10LowestTemp()
+	public synchronized ArrayList<ITemperature> allCountriesGetTop10LowestTemp()
 	{	
-		ArrayList<ITemperature> sortedData = getSorted(baseData);
-								sortedData = getUniqueCountries(sortedData);
+		return allCountriesGetTopKLowestTemp(10);
+	}
+	
+	
+	//
+	// B2
+	// the highest temperature of each country in the whole data set
+	// returns the 10 highest of those, sorted low to high
+	//
+	public synchronized ArrayList<ITemperature> allCountriesGetTop10HighestTemp()
+	{
+		return allCountriesGetTopKHighestTemp(10);
+	}
+	
+	
+	//
+	// B2
+	// the same as allCountriesGetTop10LowestTemp(), for the K lowest countries
+	//
+	public synchronized ArrayList<ITemperature> allCountriesGetTopKLowestTemp(int k)
+			throws IllegalArgumentException
+	{
+		return getTop(k, false);
+	}
+	
+	
+	//
+	// B2
+	// the same as allCountriesGetTop10HighestTemp(), for the K highest countries
+	//
+	public synchronized ArrayList<ITemperature> allCountriesGetTopKHighestTemp(int k)
+			throws IllegalArgumentException
+	{
+		return getTop(k, true);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// B2 for both lowest and highest
+	//
+	private ArrayList<ITemperature> getTop(int k, boolean highest)
+			throws IllegalArgumentException
+	{
+		ArrayList<ITemperature> topData = getCached("B2", k, highest);
 		
-		int firstIndex 	= 0;
-		int lastIndex 	= 10;
+		if ( topData == null )
+		{
+			topData = putCached( getQueryTop(new TemperatureQuery(), k, highest), "B2", k, highest );
+		}
 		
-		return getSubList(firstIndex, lastIndex, sortedData);
+		return topData;
 	}
 	
 	
 	//
-	// B2
-	// sorts the base data, flips it, then removes repeating countries except the highest ones
-	// list is automatically placed back to sorted order, so return last 10 elements
+	// (Helper Method)
+	// B1 for both lowest and highest
+	// goes over the rows of that month once, keeping each country's lowest ( or highest )
 	//
-	public ArrayList<ITemperature> allCountriesGetTop10HighestTemp()
+	private ArrayList<ITemperature> getTopByMonth(int month, int k, boolean highest)
+			throws IndexOutOfBoundsException, IllegalArgumentException
 	{
-		ArrayList<ITemperature> sortedData = getSorted(baseData);
+		ArrayList<ITemperature> topData = getCached("B1", month, k, highest);
 		
-		// reverses from low-high to high-low
-		Collections.reverse(sortedData);
-		sortedData = getUniqueCountries(sortedData);
+		if ( topData != null )
+		{
+			return topData;
+		}
 		
-		int start 	= sortedData.size() - 10;
-		int end 	= sortedData.size();
-
-		return getSubList(start, end, sortedData);
+		topData = getQueryTop( new TemperatureQuery().month(month), k, highest );
+		
+		if ( topData.isEmpty() )
+		{
+			throw new IllegalArgumentException(
+				"No such Temperature for given month, '" + months[month%12] +"' was found, try again" );
+		}
+		
+		return putCached(topData, "B1", month, k, highest);
 	}
 	
 	
@@ -465,13 +891,18 @@ public class ClimateAnalyzer implements IClimateAnalyzer{
 	// given temperature range,
 	// return all temperature objects with temperatures within that range
 	//
-	public ArrayList<ITemperature> allCountriesGetAllDataWithinTempRange(
+	public synchronized ArrayList<ITemperature> allCountriesGetAllDataWithinTempRange(
 			double lowRangeTemp, 
 			double highRangeTemp) throws IllegalArgumentException
 	{
-		ArrayList<ITemperature> sortedData = getFilteredByRange(
-				lowRangeTemp, highRangeTemp, baseData);
-								sortedData = getSorted(sortedData);
+		ArrayList<ITemperature> sortedData = getCached("B3", lowRangeTemp, highRangeTemp);
+		
+		if ( sortedData == null )
+		{
+			TemperatureQuery query = new TemperatureQuery().range(lowRangeTemp, highRangeTemp);
+			
+			sortedData = putCached( getCheckedRange( getQueryRows(query) ), "B3", lowRangeTemp, highRangeTemp );
+		}
 		
 		return sortedData;
 	}
@@ -482,46 +913,87 @@ public class ClimateAnalyzer implements IClimateAnalyzer{
 	// gets the top 10 countries with the greatest change in temperature in the same month
 	// between 2 years
 	//
-	public ArrayList<ITemperature> allCountriesTop10TempDelta(int month, int year1, int year2)
+	public synchronized ArrayList<ITemperature> allCountriesTop10TempDelta(int month, int year1, int year2)
 			throws IndexOutOfBoundsException, IllegalArgumentException
 	{
-		// Filter by month, then by year, then sort,
-		// then get the min and max temperatures for every country (for both years)
-		ArrayList<ITemperature> sortedDataYear1 = getFilteredByMonth(baseData, month);
-								sortedDataYear1 = getFilteredByYear(sortedDataYear1, year1);
-								sortedDataYear1 = getSorted(sortedDataYear1);
-								sortedDataYear1 = getCountryMinMax(sortedDataYear1);
-								
-		ArrayList<ITemperature> sortedDataYear2 = getFilteredByMonth(baseData, month);
-								sortedDataYear2 = getFilteredByYear(sortedDataYear2, year2);
-								sortedDataYear2 = getSorted(sortedDataYear2);
-								sortedDataYear2 = getCountryMinMax(sortedDataYear2);
-
-		ArrayList<ITemperature> sortedData = new ArrayList<ITemperature>();				
+		return allCountriesTopKTempDelta(month, year1, year2, 10);
+	}
+	
+	
+	//
+	// C1
+	// the same as above, for the top K countries
+	//
+	public synchronized ArrayList<ITemperature> allCountriesTopKTempDelta(int month, int year1, int year2, int k)
+			throws IndexOutOfBoundsException, IllegalArgumentException
+	{
+		ArrayList<ITemperature> cached = getCached("C1", month, year1, year2, k);
+		
+		if ( cached != null )
+		{
+			return cached;
+		}
+		
+		int 	monthId 		= getCheckedMonthId(month);
+		String 	monthAsString 	= months[month%12];
+		
+		if ( ! hasMonth(monthAsString) )
+		{
+			throw new IllegalArgumentException(
+				"No such Temperature for given month, '" + monthAsString +"' was found, try again" );
+		}
+		
+		if ( ! deltaMatrixBuilt )
+		{
+			deltaMatrix 		= TemperatureDeltaMatrix.build(baseData);
+			deltaMatrixBuilt 	= true;
+		}
 		
-		// for every temperature with the same country, get the delta between them
-		// add them to the list
-		for ( ITemperature t : sortedDataYear1 )
+		// every pair of years was worked out when the matrix was made, this only picks the top K
+		if ( deltaMatrix != null )
 		{
-			for ( ITemperature x : sortedDataYear2)
+			for ( int year : new int[] { year1, year2 } )
 			{
-				if ( t.getCountry().equalsIgnoreCase(x.getCountry()))
+				if ( ! deltaMatrix.hasYear(monthId, year) )
 				{
-					sortedData.add(new DeltaTemperature(t, x));
+					throw new IllegalArgumentException(
+							"No such temperature in the given year, '" + year +"', was found, try again");
 				}
 			}
+			
+			return putCached( deltaMatrix.getTop(monthId, year1, year2, k), "C1", month, year1, year2, k );
 		}
 		
-		// sort list from low-high
-		sortedData = getSorted(sortedData);
-		// ensures no countries appear more than once
-		sortedData = getUniqueCountries(sortedData);
+		// the min and max temperatures for every country (for both years), by case folded country
+		// the first year's are the build side of the join, the second's are probed with its countries
+		HashMap<String, int[]> minMaxYear1 = getMinMaxRows(year1, monthId);
+		HashMap<String, int[]> minMaxYear2 = getMinMaxRows(year2, monthId);
+
+		// each country keeps its smallest delta ( the first one once sorted low-high ),
+		// then the K highest of those are the top K changes in temp
+		TemperatureTopK topData = new TemperatureTopK(k, false, true);
 		
-		// get last 10 to get top 10 highest changes in temp
-		int start 	= sortedData.size() - 10;
-		int end 	= sortedData.size();
+		// for every country in both years, get the deltas between its min and max temperatures
+		for ( String country : minMaxYear1.keySet() )
+		{
+			int[] rowsYear1 = minMaxYear1.get(country);
+			int[] rowsYear2 = minMaxYear2.get(country);
+			
+			if ( rowsYear2 == null )
+			{
+				continue;
+			}
+			
+			for ( int t : rowsYear1 )
+			{
+				for ( int x : rowsYear2 )
+				{
+					topData.add( new DeltaTemperature( baseData.get(t), baseData.get(x) ) );
+				}
+			}
+		}
 		
-		return getSubList(start, end, sortedData);
+		return putCached( topData.getTop(), "C1", month, year1, year2, k );
 	}
 
 	
@@ -991,10 +1463,79 @@ public class ClimateAnalyzer implements IClimateAnalyzer{
 		executeTaskC1(scanner, columnHeader);
 	
 		scanner.close();
+		
+		// task files are buffered, makes sure they are all on disk
+		IO.flush();
 		System.out.println("Done!");		
 	}
 	
 	
+	//
+	// when true, the task files are written gzipped ( taskA1_climate_info.csv.gz, ... )
+	//
+	public void setCompressReports(boolean compress)
+	{
+		IO.setCompressReports(compress);
+	}
+	
+	
+	//
+	// sets about how many bytes of query results are cached ( 0 turns the cache off ),
+	// see QueryResultCache
+	//
+	public synchronized void setCacheSize(long maxBytes) throws IllegalArgumentException
+	{
+		cache.setMaxBytes(maxBytes);
+	}
+	
+	
+	// number of queries answered from the cache
+	public synchronized long getCacheHits()
+	{
+		return cache.getHits();
+	}
+	
+	
+	// number of queries that weren't in the cache and were run
+	public synchronized long getCacheMisses()
+	{
+		return cache.getMisses();
+	}
+	
+	
+	//
+	// sets how many threads a query over at least 'threshold' rows ( i.e. B-1, B-2, B-3 ) is split over,
+	// smaller ones run on the calling thread, 1 runs every query on it ( see TemperatureQueryEngine )
+	// the results are the same either way
+	//
+	public synchronized void setQueryParallelism(int threads, int threshold) throws IllegalArgumentException
+	{
+		if ( queries != null )
+		{
+			queries.setParallelism(threads, threshold);
+		}
+	}
+	
+	
+	//
+	// stops following the data file, the query threads, and closes every task file
+	//
+	public void close()
+	{
+		stopFollowing();
+		
+		synchronized (this)
+		{
+			if ( queries != null )
+			{
+				queries.close();
+			}
+		}
+		
+		IO.close();
+	}
+	
+	
 	public static void main ( String[] args)
 	{
 		ClimateAnalyzer ca = new ClimateAnalyzer("data/world_temp_2000-2016.csv");
@@ -1004,6 +1545,8 @@ public class ClimateAnalyzer implements IClimateAnalyzer{
 		{
 			ca.runClimateAnalyzer();
 		}
+		
+		ca.close();
 	}
 			
 }
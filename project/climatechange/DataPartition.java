@@ -0,0 +1,138 @@
+package climatechange;
+
+import java.util.HashSet;
+import java.util.List;
+
+//
+// A contiguous run of rows in ClimateAnalyzer's data that came from one file ( rows [start, end) ),
+// with enough statistics to tell that a query can't match anything in it:
+// year range, temperature range, and which countries and months it has
+//
+// used to skip whole files in a directory of per-year or per-country files
+//
+
+public class DataPartition
+{
+	private String 			name;
+	private int 			start;
+	private int 			end;
+	private int 			minYear;
+	private int 			maxYear;
+	private double 			minTemp;
+	private double 			maxTemp;
+	private HashSet<String> countries;
+	private HashSet<String> months;
+	
+	
+	//
+	// constructor takes in the partition's name ( its file ) and where its rows start
+	// the partition is empty until rows are added
+	//
+	public DataPartition(String name, int start)
+	{
+		this.name 		= name;
+		this.start 		= start;
+		this.end 		= start;
+		this.minYear 	= Integer.MAX_VALUE;
+		this.maxYear 	= Integer.MIN_VALUE;
+		this.minTemp 	= Double.POSITIVE_INFINITY;
+		this.maxTemp 	= Double.NEGATIVE_INFINITY;
+		this.countries 	= new HashSet<String>();
+		this.months 	= new HashSet<String>();
+	}
+	
+	
+	//
+	// adds the next row ( the one at index 'end' ) to the partition's statistics
+	//
+	public void add(ITemperature t)
+	{
+		double temperature = t.getTemperature(false);
+		
+		minYear = Math.min( minYear, t.getYear() );
+		maxYear = Math.max( maxYear, t.getYear() );
+		
+		// Math.min/max keep a NaN, which makes every range check pass ( never wrongly skipped )
+		minTemp = Math.min( minTemp, temperature );
+		maxTemp = Math.max( maxTemp, temperature );
+		
+		countries.add( StringDictionary.foldCase( t.getCountry() ) );
+		months.add( t.getMonth() );
+		
+		end++;
+	}
+	
+	
+	//
+	// adds every row in the list, in order
+	//
+	public void addAll(List<ITemperature> rows)
+	{
+		for ( ITemperature t : rows )
+		{
+			add(t);
+		}
+	}
+	
+	
+	//
+	// false only if no row in the partition can have that country ( compared ignoring case )
+	//
+	public boolean mayContainCountry(String country)
+	{
+		return countries.contains( StringDictionary.foldCase(country) );
+	}
+	
+	
+	//
+	// false only if no row in the partition can have that month ( i.e. "Jan" )
+	//
+	public boolean mayContainMonth(String month)
+	{
+		return months.contains(month);
+	}
+	
+	
+	//
+	// false only if no row in the partition can have that year
+	//
+	public boolean mayContainYear(int year)
+	{
+		return year >= minYear && year <= maxYear;
+	}
+	
+	
+	//
+	// false only if no row in the partition can have a temperature in [low, high] ( Celsius )
+	//
+	public boolean mayContainRange(double low, double high)
+	{
+		return ! ( maxTemp < low || minTemp > high );
+	}
+	
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	
+	// index of the first row
+	public int getStart()
+	{
+		return start;
+	}
+	
+	
+	// index just past the last row
+	public int getEnd()
+	{
+		return end;
+	}
+	
+	
+	public int size()
+	{
+		return end - start;
+	}
+}
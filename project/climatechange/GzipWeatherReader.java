@@ -0,0 +1,245 @@
+package climatechange;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+//
+// Reads a gzipped weather data file ( .csv.gz ) without unpacking it to disk first
+//
+// one thread decompresses the file into blocks and hands them over through a bounded queue,
+// while the calling thread parses the blocks it already has ( see WeatherParser ),
+// so decompressing and parsing overlap
+// a line split across two blocks is carried over and parsed with the next block
+//
+
+public class GzipWeatherReader
+{
+	public static final int DEFAULT_BLOCK_SIZE 	= 1 << 20;
+	public static final int DEFAULT_QUEUE_SIZE 	= 4;
+	
+	// marks the end of the blocks in the queue
+	private static final Block END = new Block(new byte[0], 0);
+	
+	private int blockSize;
+	private int queueSize;
+	
+	
+	//
+	// default constructor, 1MB blocks with up to 4 waiting to be parsed
+	//
+	public GzipWeatherReader()
+	{
+		this(DEFAULT_BLOCK_SIZE, DEFAULT_QUEUE_SIZE);
+	}
+	
+	
+	//
+	// constructor takes in the size of a decompressed block,
+	// and how many blocks can be waiting before the decompressing thread has to wait
+	//
+	public GzipWeatherReader(int blockSize, int queueSize)
+	{
+		if ( blockSize < 1 || queueSize < 1 )
+		{
+			throw new IllegalArgumentException("Block size and queue size must be at least 1");
+		}
+		
+		this.blockSize = blockSize;
+		this.queueSize = queueSize;
+	}
+	
+	
+	//
+	// reads every row of the file after the column header, in file order
+	//
+	public TemperatureTable read(String fileName) throws IOException
+	{
+		TemperatureTable data = new TemperatureTable();
+		
+		read(fileName, data);
+		data.trimToSize();
+		
+		return data;
+	}
+	
+	
+	//
+	// hands every row of the file after the column header to the sink, in file order
+	//
+	public void read(String fileName, IRowSink sink) throws IOException
+	{
+		BlockingQueue<Block> 	queue 			= new ArrayBlockingQueue<Block>(queueSize);
+		Decompressor 			decompressor 	= new Decompressor( new FileInputStream(fileName), queue );
+		Thread 					thread 			= new Thread(decompressor, "GzipWeatherReader-inflate");
+		
+		thread.setDaemon(true);
+		thread.start();
+		
+		try
+		{
+			WeatherParser 	parser 	= new WeatherParser();
+			byte[] 			carry 	= new byte[0];
+			boolean 		header 	= true;
+			
+			while ( true )
+			{
+				Block 	block 		= queue.take();
+				boolean endOfInput 	= block == END;
+				
+				// END also follows a failed read, the cut off data before it isn't parsed as the last line
+				if ( endOfInput && decompressor.failure != null )
+				{
+					throw decompressor.failure;
+				}
+				
+				// whatever wasn't parsed from the last block goes in front of this one
+				byte[] work = carry;
+				
+				if ( block.length > 0 )
+				{
+					work = new byte[ carry.length + block.length ];
+					System.arraycopy(carry, 0, work, 0, carry.length);
+					System.arraycopy(block.bytes, 0, work, carry.length, block.length);
+				}
+				
+				ByteBuffer 	buf 	= ByteBuffer.wrap(work);
+				int 		start 	= 0;
+				
+				if ( header )
+				{
+					start = parser.skipLine(buf, 0, work.length);
+					
+					// the header hasn't ended yet ( or ends in a '\r' that may have its '\n' in the next block )
+					boolean incomplete = start == 0 || ! isLineBreak( work[start - 1] ) 
+							|| ( start == work.length && work[start - 1] == '\r' );
+					
+					if ( ! endOfInput && incomplete )
+					{
+						carry = work;
+						continue;
+					}
+					
+					header = false;
+				}
+				
+				int consumed = parser.parse(buf, start, work.length, endOfInput, sink);
+				
+				if ( endOfInput )
+				{
+					break;
+				}
+				
+				carry = new byte[ work.length - consumed ];
+				System.arraycopy(work, consumed, carry, 0, carry.length);
+			}
+		}
+		catch (InterruptedException x)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading " + fileName, x);
+		}
+		finally
+		{
+			// stops the decompressing thread if parsing failed part way
+			thread.interrupt();
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	//
+	private static boolean isLineBreak(byte b)
+	{
+		return b == '\n' || b == '\r';
+	}
+	
+	
+	//
+	// a decompressed block, only the first 'length' bytes are used
+	//
+	private static class Block
+	{
+		private byte[] 	bytes;
+		private int 	length;
+		
+		
+		public Block(byte[] bytes, int length)
+		{
+			this.bytes 	= bytes;
+			this.length = length;
+		}
+	}
+	
+	
+	//
+	// decompresses the file into blocks on its own thread,
+	// puts END in the queue when done ( or when it fails, keeping the error for the reader )
+	//
+	private class Decompressor implements Runnable
+	{
+		private InputStream 			in;
+		private BlockingQueue<Block> 	queue;
+		private volatile IOException 	failure;
+		
+		
+		public Decompressor(InputStream in, BlockingQueue<Block> queue)
+		{
+			this.in 	= in;
+			this.queue 	= queue;
+		}
+		
+		
+		@Override
+		public void run()
+		{
+			try ( InputStream file = in; InputStream gzip = new GZIPInputStream(file, 64 * 1024) )
+			{
+				while ( true )
+				{
+					byte[] 	bytes 	= new byte[blockSize];
+					int 	length 	= 0;
+					int 	read 	= 0;
+					
+					while ( length < bytes.length && (read = gzip.read(bytes, length, bytes.length - length)) > 0 )
+					{
+						length += read;
+					}
+					
+					if ( length > 0 )
+					{
+						queue.put( new Block(bytes, length) );
+					}
+					
+					if ( read < 0 )
+					{
+						break;
+					}
+				}
+			}
+			catch (IOException x)
+			{
+				failure = x;
+			}
+			catch (InterruptedException x)
+			{
+				// the reader stopped early, nobody is waiting for the rest
+				return;
+			}
+			
+			try
+			{
+				queue.put(END);
+			}
+			catch (InterruptedException x)
+			{
+				return;
+			}
+		}
+	}
+}
@@ -27,6 +27,27 @@ public interface IClimateAnalyzer {
 	public ITemperature getHighestTempYearByCountry(String country);
 	// TASK A-4
 	// 1. get the highest temperature reading amongst all data for that country	
+	public TemperatureSummary getTempSummaryByCountry(String country);
+	// 1. lowest and highest readings, number of readings and mean temperature of all data for that country
+	public TemperatureSummary getTempSummaryByMonth(String country, int month);
+	// 1. same as above, for the data that matches the specified month ( every year )
+	public TemperatureSummary getTempSummaryByYear(String country, int year);
+	// 1. same as above, for the data that matches the specified year
+	public double getTemperaturePercentile(String country, int month, double p);
+	// 1. the temperature that p ( 0 - 1 ) of the readings for that country and month ( every year ) are at or below
+	// 2. i.e. p = 0.5 is the median, from a quantile sketch, so off by about 1% of the readings in rank
+	public double getTemperaturePercentile(String country, double p);
+	public double getTemperaturePercentile(int month, double p);
+	public double getTemperaturePercentile(double p);
+	// 1. same as above, for all of a country's readings, every country's in a month, and every reading
+	public ArrayList<ITemperature> getQueryRows(TemperatureQuery query);
+	// 1. all data that matches every predicate of the query, in one pass
+	// 2. the return list is sorted from lowest to highest temperature, with at most the query's limit
+	public TemperatureSummary getQuerySummary(TemperatureQuery query);
+	// 1. same as getTempSummaryByCountry, for the data that matches every predicate of the query
+	public ArrayList<ITemperature> getQueryTop(TemperatureQuery query, int k, boolean highest);
+	// 1. same as TASK B-1, for the data that matches every predicate of the query
+	// 2. the return list is sorted from lowest to highest temperature
 	public ArrayList<ITemperature> allCountriesGetTop10LowestTemp(int month);
 	// TASK B-1
 	// 1. the return list is sorted from lowest to highest temperature
@@ -39,6 +60,12 @@ public interface IClimateAnalyzer {
 	public ArrayList<ITemperature> allCountriesGetTop10HighestTemp();
 	// TASK B-2
 	// 1. the return list is sorted from lowest to highest temperature
+	public ArrayList<ITemperature> allCountriesGetTopKLowestTemp(int month, int k);
+	public ArrayList<ITemperature> allCountriesGetTopKHighestTemp(int month, int k);
+	public ArrayList<ITemperature> allCountriesGetTopKLowestTemp(int k);
+	public ArrayList<ITemperature> allCountriesGetTopKHighestTemp(int k);
+	// TASK B-1 and B-2 for the top K countries instead of 10
+	// 1. the return list is sorted from lowest to highest temperature
 	public ArrayList<ITemperature> allCountriesGetAllDataWithinTempRange(
 			double lowRangeTemp, 
 			double highRangeTemp
@@ -49,6 +76,8 @@ public interface IClimateAnalyzer {
 	// TASK C-1
 	// 1. the countries with the largest temperature differences (absolute value) of the same month between 2 given years.
 	// 2. the return list is sorted from lowest to highest temperature delta
+	public ArrayList<ITemperature> allCountriesTopKTempDelta(int month, int year1, int year2, int k);
+	// TASK C-1 for the top K countries instead of 10
 	public void runClimateAnalyzer();
 	// 1. This method starts the climate-change task activities
 	// 2. The ClimateChange methods must be called in the order as listed in the [description section], (first with the Task A
@@ -0,0 +1,8 @@
+package climatechange;
+
+public interface IRowSink {
+	public void acceptRow(double temperature, int year, String month, String country, String code);
+	// receives the fields of one parsed data row, in file order
+	// 1. month, country, and code are pooled Strings, the same value is always the same instance
+	// 2. nothing is allocated per row by the parser before this is called
+}
@@ -0,0 +1,20 @@
+package climatechange;
+
+public interface ITemperatureKernels {
+	public int getRangeMask(double[] values, int from, int to, double low, double high, long[] mask);
+	// 1. sets bit (i - from) of the mask for every i in [from, to) whose value is in [low, high], returns how many
+	// 2. mask needs (to - from + 63) / 64 words, each one is overwritten
+	// 3. NaN is never in a range
+	
+	public double getMin(double[] values, int from, int to);
+	// 1. lowest value in [from, to), NaN left out ( positive infinity if there are none )
+	// 2. -0.0 and 0.0 count as the same value
+	
+	public double getMax(double[] values, int from, int to);
+	// 1. highest value in [from, to), NaN left out ( negative infinity if there are none )
+	// 2. -0.0 and 0.0 count as the same value
+	
+	public void toFahrenheit(double[] values, int from, int to, double[] out, int outFrom);
+	// 1. writes values [from, to), in Celsius, to out from outFrom on, in Fahrenheit
+	// 2. the same doubles Temperature.getTemperature(true) returns, bit for bit
+}
@@ -1,11 +1,48 @@
 package climatechange;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface IWeatherIO {
 	public ArrayList<ITemperature> readDataFromFile(String fileName); 
 	// reads data from weather data file
 	
+	public TemperatureTable readDataFromMappedFile(String fileName);
+	// 1. reads data from weather data file, memory mapping it instead of reading it line by line
+	// 2. returns the same data as readDataFromFile, stored by column ( see TemperatureTable )
+	
+	public TemperatureTable readDataFromMappedFile(String fileName, int parallelism);
+	// 1. same as above, but splits the file at line boundaries and parses the pieces on 'parallelism' threads
+	// 2. rows are returned in file order, the same as the serial read
+	
+	public long readDataFromMappedFile(String fileName, long offset, int parallelism, TemperatureTable data);
+	// 1. reads the rows from byte 'offset' to the end of the file and appends them to data
+	// 2. returns the offset just past the last row read ( where the next call should start ), or -1 on error
+	// 3. past offset 0 only lines ending with a line break are read, a row still being written is left for later
+	
+	public TemperatureTable readDataFromGzipFile(String fileName);
+	// 1. reads a gzipped weather data file ( .csv.gz ) without unpacking it to disk
+	// 2. returns the same data as readDataFromFile on the unpacked file
+	
+	public TemperatureTable readDataFromSnapshot(String fileName);
+	// 1. loads a binary column snapshot written by writeDataToSnapshot, without parsing any text
+	// 2. returns the same data, in the same order, as the data file it was made from
+	
+	public boolean writeDataToSnapshot(String fileName, List<ITemperature> data);
+	// 1. saves the data as a binary column snapshot ( dictionary encoded countries and codes )
+	// 2. returns false if the file couldn't be written
+	
+	public Stream<ITemperature> streamDataFromFile(String fileName);
+	// 1. streams the rows of the weather data file as they are parsed, in file order
+	// 2. only the current row is held in memory, the file is never fully loaded
+	// 3. the stream keeps the file open until it is closed
+	
+	public boolean visitDataFromFile(String fileName, Consumer<? super ITemperature> visitor);
+	// 1. hands every row of the weather data file to the visitor, in file order
+	// 2. returns false if the file couldn't be read completely
+	
 	public void writeSubjectHeaderInFile(String filename, String subject);
 	// 1. write the subject header before dumping data returned from each ClimateAnalyzer method
 	// 2. a subject header is to be written for each ClimateAnalyzer method call
@@ -18,4 +55,14 @@ public interface IWeatherIO {
 	// 3. temperature value should be formatted to use a maximum of 2 decimal places
 	// 4. temperature field should also show the Fahrenheit value (using decimal rules above)
 	// a) the temperature field should look like i.e. 21.34(C) 70.42(F)
+	
+	public void setCompressReports(boolean compress);
+	// when true, task files are written gzipped, with .gz added to their names
+	
+	public void flush();
+	// writes out anything still buffered for the task files
+	
+	public void close();
+	// 1. flushes and closes every task file that is open
+	// 2. task files are kept open between writes, so this should be called when done writing
 }
@@ -0,0 +1,157 @@
+package climatechange;
+
+import java.util.Arrays;
+
+//
+// Map from long keys to int values, stored in two plain arrays ( open addressing, linear probing )
+// nothing is boxed, a lookup is a hash and a few array reads
+//
+// keys can't be negative ( -1 marks an empty slot ), values can't be -1 ( it means "not found" )
+// not thread safe
+//
+
+public class LongIntHashMap
+{
+	private static final long 	EMPTY 				= -1L;
+	private static final int 	DEFAULT_CAPACITY 	= 16;
+	
+	private long[] 	keys;
+	private int[] 	values;
+	private int 	size;
+	
+	
+	//
+	// default constructor, an empty map
+	//
+	public LongIntHashMap()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+	
+	
+	//
+	// constructor takes in how many entries to make room for up front
+	//
+	public LongIntHashMap(int expectedSize)
+	{
+		int capacity = Integer.highestOneBit( Math.max(expectedSize, DEFAULT_CAPACITY / 2) * 2 - 1 ) << 1;
+		
+		this.keys 	= new long[capacity];
+		this.values = new int[capacity];
+		this.size 	= 0;
+		
+		Arrays.fill(keys, EMPTY);
+	}
+	
+	
+	//
+	// the value for the key, or -1 if there isn't one
+	//
+	public int get(long key)
+	{
+		int mask = keys.length - 1;
+		
+		for ( int slot = hash(key) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask )
+		{
+			if ( keys[slot] == key )
+			{
+				return values[slot];
+			}
+		}
+		
+		return -1;
+	}
+	
+	
+	//
+	// sets the value for the key, returns the value it replaced or -1 if the key is new
+	//
+	public int put(long key, int value)
+	{
+		if ( key < 0 || value == -1 )
+		{
+			throw new IllegalArgumentException("Keys can't be negative and values can't be -1");
+		}
+		
+		// kept at most half full, so probes stay short
+		if ( (size + 1) * 2 > keys.length )
+		{
+			rehash(keys.length * 2);
+		}
+		
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		
+		while ( keys[slot] != EMPTY )
+		{
+			if ( keys[slot] == key )
+			{
+				int old = values[slot];
+				values[slot] = value;
+				
+				return old;
+			}
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		keys[slot] 		= key;
+		values[slot] 	= value;
+		size++;
+		
+		return -1;
+	}
+	
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// moves every entry into arrays of the new capacity
+	//
+	private void rehash(int capacity)
+	{
+		long[] 	oldKeys 	= keys;
+		int[] 	oldValues 	= values;
+		
+		keys 	= new long[capacity];
+		values 	= new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		
+		int mask = capacity - 1;
+		
+		for ( int i = 0; i < oldKeys.length; i++ )
+		{
+			if ( oldKeys[i] != EMPTY )
+			{
+				int slot = hash(oldKeys[i]) & mask;
+				
+				while ( keys[slot] != EMPTY )
+				{
+					slot = (slot + 1) & mask;
+				}
+				
+				keys[slot] 		= oldKeys[i];
+				values[slot] 	= oldValues[i];
+			}
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// spreads the key's bits, packed keys differ mostly in their low bits
+	//
+	private static int hash(long key)
+	{
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		
+		return (int) key;
+	}
+}
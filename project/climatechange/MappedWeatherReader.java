@@ -0,0 +1,263 @@
+package climatechange;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+//
+// Memory maps a weather data file and parses it, optionally on several threads
+//
+// each mapped window is cut into chunks at line boundaries,
+// every chunk is parsed by its own WeatherParser on a fork/join pool,
+// then the chunk results are appended in file order, so the row order is the same as a serial read
+// rows go straight into the columns of a TemperatureTable, no object is made per row
+//
+
+public class MappedWeatherReader
+{
+	// largest region mapped at once, a single mapping can't exceed Integer.MAX_VALUE bytes
+	public static final long 	MAX_MAP_WINDOW 	= 1L << 30;
+	
+	// chunks smaller than this aren't worth handing to another thread
+	private static final int 	MIN_CHUNK_BYTES = 1 << 20;
+	
+	private int parallelism;
+	
+	
+	//
+	// constructor takes in the number of threads used to parse,
+	// 1 parses everything on the calling thread
+	//
+	public MappedWeatherReader(int parallelism)
+	{
+		if ( parallelism < 1 )
+		{
+			throw new IllegalArgumentException("Parallelism must be at least 1, was " + parallelism);
+		}
+		
+		this.parallelism = parallelism;
+	}
+	
+	
+	//
+	// reads every row of the file after the column header
+	//
+	public TemperatureTable read(String fileName) throws IOException
+	{
+		TemperatureTable data = new TemperatureTable();
+		
+		read(fileName, 0, data);
+		data.trimToSize();
+		
+		return data;
+	}
+	
+	
+	//
+	// reads the rows from byte 'offset' to the end of the file and appends them to data
+	// returns the offset just past the last row read, so the next call can pick up from there
+	//
+	// offset 0 is the start of the file, the column header is skipped
+	// and a last line without a line break is read too
+	// past 0, only lines that end with '\n' are read, a line that is still being written
+	// is left for the next call ( used for following a file that is appended to )
+	//
+	// files bigger than MAX_MAP_WINDOW are mapped one window at a time,
+	// a line cut off at the end of a window is picked up again by the next window
+	//
+	public long read(String fileName, long offset, TemperatureTable data) throws IOException
+	{
+		ForkJoinPool pool = ( parallelism > 1 ) ? new ForkJoinPool(parallelism) : null;
+		
+		try ( FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ) )
+		{
+			long 	size 			= channel.size();
+			long 	position 		= offset;
+			boolean header 			= offset == 0;
+			boolean wholeLinesOnly 	= offset > 0;
+			
+			if ( size < offset )
+			{
+				throw new IOException(fileName + " is shorter than the " + offset 
+						+ " bytes already read, it was truncated or replaced");
+			}
+			
+			while ( position < size )
+			{
+				int 				length 		= (int) Math.min(size - position, MAX_MAP_WINDOW);
+				boolean 			lastWindow 	= position + length == size;
+				MappedByteBuffer 	buf 		= channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				
+				int start = 0;
+				
+				if ( header )
+				{
+					start 	= new WeatherParser().skipLine(buf, 0, length);
+					header 	= false;
+				}
+				else if ( wholeLinesOnly && position == offset )
+				{
+					// the file may not have ended with a line break when it was last read
+					start = skipLineBreaks(buf, 0, length);
+				}
+				
+				// only whole lines are parsed, the rest is left for the next window
+				int end = ( lastWindow && ! wholeLinesOnly ) ? length : lastLineEnd(buf, start, length);
+				
+				if ( end == start )
+				{
+					if ( lastWindow )
+					{
+						position += start;
+						break;
+					}
+					
+					throw new IOException("Line at byte " + position + " is longer than the mapping window");
+				}
+				
+				parseWindow(buf, start, end, pool, data);
+				
+				position += end;
+			}
+			
+			return position;
+		}
+		finally
+		{
+			if ( pool != null )
+			{
+				pool.shutdown();
+			}
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// splits [start, end) into line aligned chunks, parses them and appends the rows to data in order
+	//
+	private void parseWindow(ByteBuffer buf, int start, int end, ForkJoinPool pool, TemperatureTable data)
+	{
+		int chunkCount = (int) Math.min( parallelism * 4L, Math.max( 1, (end - start) / MIN_CHUNK_BYTES ) );
+		
+		if ( pool == null || chunkCount <= 1 )
+		{
+			data.ensureCapacity( data.size() + (end - start) / 32 );
+			new ChunkTask(buf, start, end, data).compute();
+			return;
+		}
+		
+		ChunkTask[] tasks 		= new ChunkTask[chunkCount];
+		int 		chunkStart 	= start;
+		
+		for ( int i = 0; i < chunkCount; i++ )
+		{
+			int guess 		= start + (int) ( (long) (end - start) * (i + 1) / chunkCount );
+			int chunkEnd 	= ( i == chunkCount - 1 ) ? end : nextLineStart(buf, Math.max(guess, chunkStart), end);
+			
+			tasks[i] 	= new ChunkTask(buf, chunkStart, chunkEnd, new TemperatureTable( (chunkEnd - chunkStart) / 32 ));
+			chunkStart 	= chunkEnd;
+		}
+		
+		for ( ChunkTask task : tasks )
+		{
+			pool.execute(task);
+		}
+		
+		// joins in submission order, which is file order
+		data.ensureCapacity( data.size() + (end - start) / 32 );
+		
+		for ( ChunkTask task : tasks )
+		{
+			data.addAll( task.join() );
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// index just past the next '\n' at or after from, or end if there isn't one
+	//
+	private static int nextLineStart(ByteBuffer buf, int from, int end)
+	{
+		for ( int i = from; i < end; i++ )
+		{
+			if ( buf.get(i) == '\n' )
+			{
+				return i + 1;
+			}
+		}
+		
+		return end;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// index of the first byte in [start, end) that isn't '\r' or '\n'
+	//
+	private static int skipLineBreaks(ByteBuffer buf, int start, int end)
+	{
+		while ( start < end && ( buf.get(start) == '\n' || buf.get(start) == '\r' ) )
+		{
+			start++;
+		}
+		
+		return start;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// index just past the last '\n' in [start, end), or start if there isn't one
+	//
+	private static int lastLineEnd(ByteBuffer buf, int start, int end)
+	{
+		for ( int i = end - 1; i >= start; i-- )
+		{
+			if ( buf.get(i) == '\n' )
+			{
+				return i + 1;
+			}
+		}
+		
+		return start;
+	}
+	
+	
+	//
+	// parses one line aligned chunk [start, end) into its own table
+	//
+	private static class ChunkTask extends RecursiveTask<TemperatureTable>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private ByteBuffer 			buf;
+		private int 				start;
+		private int 				end;
+		private TemperatureTable 	rows;
+		
+		
+		public ChunkTask(ByteBuffer buf, int start, int end, TemperatureTable rows)
+		{
+			this.buf 	= buf;
+			this.start 	= start;
+			this.end 	= end;
+			this.rows 	= rows;
+		}
+		
+		
+		@Override
+		protected TemperatureTable compute()
+		{
+			new WeatherParser().parse(buf, start, end, true, rows);
+			
+			return rows;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package climatechange;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+//
+// Hands out the rows of a weather data file one at a time, as they are parsed
+//
+// the file is memory mapped one window at a time ( see MappedWeatherReader ),
+// only the current row is ever held, so a pass over the file uses constant heap
+// no matter how big the file is
+//
+// errors while reading show up as UncheckedIOException / NumberFormatException
+// from tryAdvance, close() releases the file
+//
+
+public class MappedWeatherSpliterator implements Spliterator<ITemperature>, Closeable
+{
+	private FileChannel 		channel;
+	private WeatherParser 		parser;
+	private long 				size;
+	
+	private MappedByteBuffer 	buf;
+	private long 				windowPosition;
+	private int 				pos;
+	private int 				end;
+	private boolean 			lastWindow;
+	private boolean 			header;
+	
+	private ITemperature 		current;
+	private IRowSink 			sink;
+	
+	
+	//
+	// constructor opens the file, nothing is mapped until the first row is asked for
+	//
+	public MappedWeatherSpliterator(String fileName) throws IOException
+	{
+		this.channel 			= FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		this.parser 			= new WeatherParser();
+		this.size 				= channel.size();
+		this.windowPosition 	= 0;
+		this.header 			= true;
+		
+		this.sink = new IRowSink()
+		{
+			@Override
+			public void acceptRow(double temperature, int year, String month, String country, String code)
+			{
+				current = new Temperature(temperature, year, month, country, code);
+			}
+		};
+	}
+	
+	
+	//
+	// parses the next row and gives it to action
+	// returns false once the end of the file is reached
+	//
+	@Override
+	public boolean tryAdvance(Consumer<? super ITemperature> action)
+	{
+		while ( true )
+		{
+			if ( buf != null && pos < end )
+			{
+				int next = parser.parseOne(buf, pos, end, lastWindow, sink);
+				
+				if ( next != pos )
+				{
+					pos = next;
+					
+					ITemperature row 	= current;
+					current 			= null;
+					
+					action.accept(row);
+					return true;
+				}
+			}
+			
+			if ( ! mapNextWindow() )
+			{
+				return false;
+			}
+		}
+	}
+	
+	
+	//
+	// rows have to be read in order, so this never splits
+	//
+	@Override
+	public Spliterator<ITemperature> trySplit()
+	{
+		return null;
+	}
+	
+	
+	//
+	// the row count isn't known without reading the whole file
+	//
+	@Override
+	public long estimateSize()
+	{
+		return Long.MAX_VALUE;
+	}
+	
+	
+	@Override
+	public int characteristics()
+	{
+		return ORDERED | NONNULL | IMMUTABLE;
+	}
+	
+	
+	//
+	// releases the file, the spliterator can't be used after this
+	//
+	@Override
+	public void close() throws IOException
+	{
+		buf = null;
+		channel.close();
+	}
+	
+	
+	//
+	// (Helper Method)
+	// moves the window forward to the first byte that hasn't been parsed yet and maps it
+	// returns false when there is nothing left
+	//
+	private boolean mapNextWindow()
+	{
+		if ( buf != null )
+		{
+			if ( lastWindow )
+			{
+				return false;
+			}
+			
+			if ( pos == 0 )
+			{
+				throw new UncheckedIOException(new IOException(
+						"Line at byte " + windowPosition + " is longer than the mapping window"));
+			}
+			
+			windowPosition += pos;
+		}
+		
+		if ( windowPosition >= size )
+		{
+			return false;
+		}
+		
+		int length = (int) Math.min(size - windowPosition, MappedWeatherReader.MAX_MAP_WINDOW);
+		
+		try
+		{
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, windowPosition, length);
+		}
+		catch (IOException x)
+		{
+			throw new UncheckedIOException(x);
+		}
+		
+		lastWindow 	= windowPosition + length == size;
+		pos 		= 0;
+		end 		= length;
+		
+		if ( header )
+		{
+			pos 	= parser.skipLine(buf, 0, length);
+			header 	= false;
+		}
+		
+		return true;
+	}
+}
@@ -0,0 +1,489 @@
+package climatechange;
+
+import java.util.Arrays;
+import java.util.Random;
+
+//
+// Mergeable quantile sketch ( KLL style ) of a stream of temperatures:
+// answers "what value are p of them at or below" ( i.e. the median, p90, p99 )
+// from a few hundred kept values, however many went in
+//
+// values are kept in levels, a value at level h stands for 2^h of them
+// when a level fills up it's sorted and every other value moves up a level ( weighing twice as much ),
+// higher levels hold more of the weight, so they're given more room and shrink slowest
+// the room a level gets goes down by 2/3 each level below the top one ( but never below 8 ),
+// and a level is only emptied once the sketch as a whole is full, so about 3K values are kept in all
+//
+// with K values or fewer it's exact, after that a quantile's rank is off by about 1 / K of the count
+// ( i.e. with the default K of 200, the worst of 999 quantiles of 1M random values was off by 0.75%
+// of them, so within about 1% ), main checks it against an exact sort
+// the lowest and highest value are always exact
+//
+// merge() adds another sketch's values ( i.e. two countries' ), the result is as good as one sketch of both
+// which half of a level moves up is a coin toss, the coin always starts the same,
+// so the same values in the same order always give the same sketch
+// NaN is left out
+// not thread safe
+//
+
+public class QuantileSketch
+{
+	public static final int 	DEFAULT_K 		= 200;
+	
+	// room of a level, as a share of the one above it
+	private static final double LEVEL_SHRINK 	= 2.0 / 3.0;
+	// the least room a level gets, however far down it is ( fewer makes the low levels' error add up )
+	private static final int 	MIN_CAPACITY 	= 8;
+	
+	// the coin that picks which half of a level moves up always starts the same
+	private static final long 	SEED 			= 0x5EED;
+	
+	private int 		k;
+	private double[][] 	levels;
+	private int[] 		sizes;
+	private Random 		coin;
+	private int 		levelCount;
+	private long 		count;
+	
+	// values kept, and the room of every level put together
+	private int 		retained;
+	private int 		capacity;
+	private double 		min;
+	private double 		max;
+	
+	// every kept value sorted, and the weight at or below each one, made on the first query after a change
+	private double[] 	sortedValues;
+	private long[] 		cumulativeWeights;
+	
+	
+	//
+	// default constructor, an empty sketch with the default K
+	//
+	public QuantileSketch()
+	{
+		this(DEFAULT_K);
+	}
+	
+	
+	//
+	// constructor takes in K, the room of the top level ( more is more exact, and bigger )
+	//
+	public QuantileSketch(int k)
+	{
+		if ( k < MIN_CAPACITY )
+		{
+			throw new IllegalArgumentException("A quantile sketch needs a K of at least " + MIN_CAPACITY + ", was " + k);
+		}
+		
+		this.k 			= k;
+		this.levels 	= new double[0][];
+		this.sizes 		= new int[0];
+		this.coin 		= new Random(SEED);
+		this.levelCount = 0;
+		this.count 		= 0;
+		this.retained 	= 0;
+		this.min 		= Double.NaN;
+		this.max 		= Double.NaN;
+		
+		addLevel();
+	}
+	
+	
+	//
+	// adds one value ( NaN is left out )
+	//
+	public void add(double value)
+	{
+		if ( Double.isNaN(value) )
+		{
+			return;
+		}
+		
+		min = ( count == 0 ) ? value : Math.min(min, value);
+		max = ( count == 0 ) ? value : Math.max(max, value);
+		
+		count++;
+		append(0, value);
+		compress();
+	}
+	
+	
+	//
+	// adds every value of another sketch
+	//
+	public void merge(QuantileSketch that)
+	{
+		if ( that.count == 0 )
+		{
+			return;
+		}
+		
+		min = ( count == 0 ) ? that.min : Math.min(min, that.min);
+		max = ( count == 0 ) ? that.max : Math.max(max, that.max);
+		
+		while ( levelCount < that.levelCount )
+		{
+			addLevel();
+		}
+		
+		for ( int h = 0; h < that.levelCount; h++ )
+		{
+			for ( int i = 0; i < that.sizes[h]; i++ )
+			{
+				append( h, that.levels[h][i] );
+			}
+		}
+		
+		count += that.count;
+		compress();
+	}
+	
+	
+	//
+	// the value that p ( 0 - 1 ) of the values are at or below, i.e. 0.5 is the median
+	// ( the lowest kept value with at least p of the weight at or below it ),
+	// p of 0 is the lowest value and 1 the highest, NaN if the sketch is empty
+	//
+	public double getQuantile(double p)
+	{
+		if ( count == 0 )
+		{
+			return Double.NaN;
+		}
+		
+		if ( p <= 0 )
+		{
+			return min;
+		}
+		
+		if ( p >= 1 )
+		{
+			return max;
+		}
+		
+		sortValues();
+		
+		long 	rank 	= Math.max( 1, (long) Math.ceil(p * count) );
+		int 	index 	= Arrays.binarySearch(cumulativeWeights, rank);
+		
+		// not there exactly, the first one past it
+		if ( index < 0 )
+		{
+			index = -index - 1;
+		}
+		
+		return sortedValues[ Math.min(index, sortedValues.length - 1) ];
+	}
+	
+	
+	// number of values added
+	public long getCount()
+	{
+		return count;
+	}
+	
+	
+	// NaN if the sketch is empty
+	public double getMin()
+	{
+		return min;
+	}
+	
+	
+	// NaN if the sketch is empty
+	public double getMax()
+	{
+		return max;
+	}
+	
+	
+	// number of values kept
+	public int getRetained()
+	{
+		return retained;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// while more values are kept than there's room for in all the levels,
+	// moves half of the lowest full level up a level
+	//
+	private void compress()
+	{
+		sortedValues = null;
+		
+		// a level can go past its room while the sketch as a whole isn't full, more values are kept that way
+		while ( retained > capacity )
+		{
+			int h = 0;
+			
+			while ( sizes[h] < getCapacity(h) )
+			{
+				h++;
+			}
+			
+			compact(h);
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// sorts level h and moves every other value up to level h + 1
+	// ( an odd one out stays behind, so the weight in the sketch never changes )
+	//
+	private void compact(int h)
+	{
+		if ( h + 1 == levelCount )
+		{
+			addLevel();
+		}
+		
+		double[] 	values 	= levels[h];
+		int 		size 	= sizes[h];
+		int 		left 	= size & 1;
+		
+		Arrays.sort(values, 0, size);
+		
+		for ( int i = left + ( coin.nextBoolean() ? 1 : 0 ); i < size; i += 2 )
+		{
+			append( h + 1, values[i] );
+		}
+		
+		retained 	-= sizes[h] - left;
+		sizes[h] 	= left;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// how many values level h can hold, K at the top level, 2/3 of that for each level below it
+	//
+	private int getCapacity(int h)
+	{
+		return Math.max( MIN_CAPACITY, (int) Math.ceil( k * Math.pow(LEVEL_SHRINK, levelCount - 1 - h) ) );
+	}
+	
+	
+	//
+	// (Helper Method)
+	// adds a value to level h, making room for it if needed
+	//
+	private void append(int h, double value)
+	{
+		if ( sizes[h] == levels[h].length )
+		{
+			levels[h] = Arrays.copyOf( levels[h], Math.max( 8, levels[h].length * 2 ) );
+		}
+		
+		levels[h][ sizes[h]++ ] = value;
+		retained++;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// adds an empty level on top
+	//
+	private void addLevel()
+	{
+		levels 	= Arrays.copyOf(levels, levelCount + 1);
+		sizes 	= Arrays.copyOf(sizes, levelCount + 1);
+		
+		levels[levelCount] = new double[0];
+		levelCount++;
+		
+		// every level's room changes with a new one on top
+		capacity = 0;
+		
+		for ( int h = 0; h < levelCount; h++ )
+		{
+			capacity += getCapacity(h);
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// merges every level's values, sorted, into sortedValues with their running weights
+	//
+	private void sortValues()
+	{
+		if ( sortedValues != null )
+		{
+			return;
+		}
+		
+		double[] 	values 	= new double[0];
+		long[] 		weights = new long[0];
+		
+		for ( int h = 0; h < levelCount; h++ )
+		{
+			double[] 	level 			= Arrays.copyOf( levels[h], sizes[h] );
+			double[] 	merged 			= new double[ values.length + level.length ];
+			long[] 		mergedWeights 	= new long[ merged.length ];
+			int 		i 				= 0;
+			int 		j 				= 0;
+			
+			Arrays.sort(level);
+			
+			for ( int m = 0; m < merged.length; m++ )
+			{
+				if ( j >= level.length || ( i < values.length && values[i] <= level[j] ) )
+				{
+					mergedWeights[m] 	= weights[i];
+					merged[m] 			= values[i++];
+				}
+				else
+				{
+					mergedWeights[m] 	= 1L << h;
+					merged[m] 			= level[j++];
+				}
+			}
+			
+			values 	= merged;
+			weights = mergedWeights;
+		}
+		
+		for ( int m = 1; m < weights.length; m++ )
+		{
+			weights[m] += weights[m - 1];
+		}
+		
+		sortedValues 		= values;
+		cumulativeWeights 	= weights;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// how far the rank of the sketch's quantile p is from where it should be, as a share of the count
+	// ( i.e. 0.01 is 1% ), checked against every value that went in, sorted low to high
+	// 0 if an exact sort gives the same answer
+	//
+	private static double getRankError(QuantileSketch sketch, double[] sorted, double p)
+	{
+		double 	value 		= sketch.getQuantile(p);
+		long 	rank 		= Math.min( sorted.length, Math.max( 1, (long) Math.ceil(p * sorted.length) ) );
+		int 	below 		= countBelow(sorted, value, false);
+		int 	atOrBelow 	= countBelow(sorted, value, true);
+		long 	off 		= 0;
+		
+		// the value takes up ranks below + 1 to atOrBelow in the exact sort
+		if ( rank <= below )
+		{
+			off = below + 1 - rank;
+		}
+		else if ( rank > atOrBelow )
+		{
+			off = rank - atOrBelow;
+		}
+		
+		return (double) off / sorted.length;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// how many of the sorted values are below the value ( or at or below it )
+	//
+	private static int countBelow(double[] sorted, double value, boolean orEqual)
+	{
+		int from 	= 0;
+		int to 		= sorted.length;
+		
+		while ( from < to )
+		{
+			int mid = (from + to) >>> 1;
+			
+			if ( sorted[mid] < value || ( orEqual && sorted[mid] == value ) )
+			{
+				from = mid + 1;
+			}
+			else
+			{
+				to = mid;
+			}
+		}
+		
+		return from;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the worst rank error of the 999 quantiles 0.001 to 0.999
+	//
+	private static double getWorstRankError(QuantileSketch sketch, double[] sorted)
+	{
+		double worst = 0;
+		
+		for ( int i = 1; i < 1000; i++ )
+		{
+			worst = Math.max( worst, getRankError(sketch, sorted, i / 1000.0) );
+		}
+		
+		return worst;
+	}
+	
+	
+	//
+	// checks the sketch's accuracy against an exact sort,
+	// over a data file's temperatures, or 1M random values if no file is given:
+	// java climatechange.QuantileSketch [data file]
+	// the values are added in order, in sorted order, and in 2 halves merged together
+	//
+	public static void main(String[] args)
+	{
+		double[] values;
+		
+		if ( args.length == 1 )
+		{
+			TemperatureTable data = new WeatherIO().readDataFromMappedFile( args[0],
+					Runtime.getRuntime().availableProcessors() );
+			
+			if ( data == null || data.isEmpty() )
+			{
+				return;
+			}
+			
+			values = new double[data.size()];
+			data.getTemperatures(0, values.length, false, values, 0);
+		}
+		else
+		{
+			Random random = new Random(1);
+			
+			values = new double[1000000];
+			
+			for ( int i = 0; i < values.length; i++ )
+			{
+				values[i] = random.nextGaussian() * 10;
+			}
+		}
+		
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		
+		QuantileSketch inOrder 		= new QuantileSketch();
+		QuantileSketch sortedOrder 	= new QuantileSketch();
+		QuantileSketch firstHalf 	= new QuantileSketch();
+		QuantileSketch secondHalf 	= new QuantileSketch();
+		
+		for ( int i = 0; i < values.length; i++ )
+		{
+			inOrder.add( values[i] );
+			sortedOrder.add( sorted[i] );
+			( i < values.length / 2 ? firstHalf : secondHalf ).add( values[i] );
+		}
+		
+		firstHalf.merge(secondHalf);
+		
+		System.out.println(values.length + " values, " + inOrder.getRetained() 
+				+ " kept, worst rank error of 999 quantiles:");
+		System.out.println("in order: " + String.format("%.3f", 100 * getWorstRankError(inOrder, sorted)) + "%");
+		System.out.println("sorted: " + String.format("%.3f", 100 * getWorstRankError(sortedOrder, sorted)) + "%");
+		System.out.println("merged: " + String.format("%.3f", 100 * getWorstRankError(firstHalf, sorted)) + "%");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,204 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+//
+// Results of ClimateAnalyzer's queries, keyed by the method and its arguments ( i.e. "B1 highest", 7, 10 ),
+// so a query asked again is answered without running it
+//
+// the cache holds at most about maxBytes of results ( a rough estimate per row ),
+// when a new result doesn't fit the least recently used ones are evicted first
+//
+// results are copied in and can't be changed while cached, ClimateAnalyzer hands out copies of them
+// the rows themselves ( views and DeltaTemperatures ) never change
+//
+// clear() has to be called whenever the data changes
+// not thread safe, ClimateAnalyzer's queries are synchronized
+//
+
+public class QueryResultCache
+{
+	public static final long 	DEFAULT_MAX_BYTES 	= 8L * 1024 * 1024;
+	
+	// rough size of a cached entry, and of each row in it
+	private static final long 	ENTRY_BYTES 		= 128;
+	private static final long 	ROW_BYTES 			= 48;
+	
+	private LinkedHashMap<List<Object>, List<ITemperature>> 	results;
+	private long 												maxBytes;
+	private long 												usedBytes;
+	private long 												hits;
+	private long 												misses;
+	
+	
+	//
+	// default constructor, holds up to DEFAULT_MAX_BYTES
+	//
+	public QueryResultCache()
+	{
+		this(DEFAULT_MAX_BYTES);
+	}
+	
+	
+	//
+	// constructor takes in about how many bytes of results to hold ( 0 caches nothing )
+	//
+	public QueryResultCache(long maxBytes)
+	{
+		// access order, so iterating goes from the least recently used
+		this.results 	= new LinkedHashMap<List<Object>, List<ITemperature>>(16, 0.75f, true);
+		this.usedBytes 	= 0;
+		
+		setMaxBytes(maxBytes);
+	}
+	
+	
+	//
+	// the cached rows for the method and arguments, or null if they aren't cached
+	// the list can't be changed
+	//
+	public List<ITemperature> get(Object... key)
+	{
+		List<ITemperature> rows = results.get( Arrays.asList(key) );
+		
+		if ( rows == null )
+		{
+			misses++;
+		}
+		else
+		{
+			hits++;
+		}
+		
+		return rows;
+	}
+	
+	
+	//
+	// caches a copy of the rows for the method and arguments, evicting the least recently used results
+	// to make room ( nothing is cached if the rows alone are more than maxBytes )
+	//
+	public void put(List<ITemperature> rows, Object... key)
+	{
+		List<Object> 	cacheKey 	= Arrays.asList(key);
+		long 			bytes 		= getBytes(rows);
+		
+		remove(cacheKey);
+		
+		if ( bytes > maxBytes )
+		{
+			return;
+		}
+		
+		evict(maxBytes - bytes);
+		
+		results.put( cacheKey, Collections.unmodifiableList( new ArrayList<ITemperature>(rows) ) );
+		usedBytes += bytes;
+	}
+	
+	
+	//
+	// drops every result ( the hit and miss counts are kept )
+	//
+	public void clear()
+	{
+		results.clear();
+		usedBytes = 0;
+	}
+	
+	
+	//
+	// sets about how many bytes of results to hold, evicting results if there are more already
+	//
+	public void setMaxBytes(long maxBytes)
+	{
+		if ( maxBytes < 0 )
+		{
+			throw new IllegalArgumentException("Input for cache size, '" + maxBytes + "', can't be negative, try again");
+		}
+		
+		this.maxBytes = maxBytes;
+		
+		evict(maxBytes);
+	}
+	
+	
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+	
+	
+	// estimated size of every cached result
+	public long getUsedBytes()
+	{
+		return usedBytes;
+	}
+	
+	
+	// number of cached results
+	public int size()
+	{
+		return results.size();
+	}
+	
+	
+	// number of times get found a result
+	public long getHits()
+	{
+		return hits;
+	}
+	
+	
+	// number of times get didn't find a result
+	public long getMisses()
+	{
+		return misses;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// evicts the least recently used results until they take up no more than 'bytes'
+	//
+	private void evict(long bytes)
+	{
+		Iterator<List<ITemperature>> leastRecent = results.values().iterator();
+		
+		while ( usedBytes > bytes && leastRecent.hasNext() )
+		{
+			usedBytes -= getBytes( leastRecent.next() );
+			leastRecent.remove();
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// drops the result for the key, if there is one
+	//
+	private void remove(List<Object> key)
+	{
+		List<ITemperature> rows = results.remove(key);
+		
+		if ( rows != null )
+		{
+			usedBytes -= getBytes(rows);
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// estimated size of a cached result
+	//
+	private static long getBytes(List<ITemperature> rows)
+	{
+		return ENTRY_BYTES + ROW_BYTES * rows.size();
+	}
+}
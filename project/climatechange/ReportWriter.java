@@ -0,0 +1,274 @@
+package climatechange;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+//
+// Keeps one buffered writer open per report file ( taskA1_climate_info.csv, ... ),
+// instead of opening, writing and closing the file for every call
+//
+// a file's buffer is written out when it holds flushChars characters ( size policy ),
+// and every buffer is flushed every flushMillis on a background thread ( time policy )
+// close() flushes and closes every file
+//
+// files are opened in append mode, the same as FileWriter(filename, true)
+// a file whose name ends with .gz is written gzipped, each time it is opened adds a new gzip member
+// ( gunzip and GZIPInputStream read concatenated members as one file )
+// with setCompressAll(true), .gz is added to every file name that doesn't already have it
+//
+
+public class ReportWriter implements Closeable
+{
+	public static final int 	DEFAULT_FLUSH_CHARS 	= 64 * 1024;
+	public static final long 	DEFAULT_FLUSH_MILLIS 	= 1000;
+	
+	private HashMap<String, Writer> 	writers;
+	private int 						flushChars;
+	private long 						flushMillis;
+	private ScheduledExecutorService 	flushTimer;
+	private TemperatureFormatter 		formatter;
+	private boolean 					compressAll;
+	
+	
+	//
+	// default constructor, 64K character buffers flushed at least once a second
+	//
+	public ReportWriter()
+	{
+		this(DEFAULT_FLUSH_CHARS, DEFAULT_FLUSH_MILLIS);
+	}
+	
+	
+	//
+	// constructor takes in the buffer size per file, and how often to flush ( 0 = only when full )
+	//
+	public ReportWriter(int flushChars, long flushMillis)
+	{
+		if ( flushChars < 1 || flushMillis < 0 )
+		{
+			throw new IllegalArgumentException("Flush size must be positive and flush interval can't be negative");
+		}
+		
+		this.writers 		= new HashMap<String, Writer>();
+		this.flushChars 	= flushChars;
+		this.flushMillis 	= flushMillis;
+		this.formatter 		= new TemperatureFormatter();
+	}
+	
+	
+	//
+	// writes each line to the file followed by a line separator ( like PrintWriter.println )
+	// the file is opened the first time it's written to, and stays open
+	//
+	public synchronized void writeLines(String filename, String... lines) throws IOException
+	{
+		Writer writer = getWriter(filename);
+		
+		for ( String line : lines )
+		{
+			writer.write(line);
+			writer.write( System.lineSeparator() );
+		}
+	}
+	
+	
+	//
+	// writes the topic line, then one line per temperature, its toString() like PrintWriter.println
+	// ( the repo's own rows are formatted straight into a buffer, the same text their toString() gives )
+	//
+	public synchronized void writeRows(String filename, String topic, Iterable<? extends ITemperature> rows)
+			throws IOException
+	{
+		Writer writer = getWriter(filename);
+		
+		writer.write(topic);
+		writer.write( System.lineSeparator() );
+		
+		// each row is formatted into the same char buffer, nothing is allocated per row
+		for ( ITemperature t : rows )
+		{
+			if ( isFormatted(t) )
+			{
+				int length = formatter.format(t);
+				
+				writer.write( formatter.getChars(), 0, length );
+			}
+			else
+			{
+				writer.write( String.valueOf(t) );
+			}
+			
+			writer.write( System.lineSeparator() );
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// true if the row's toString() is TemperatureFormatter's output ( Temperature's, DeltaTemperature's
+	// and TemperatureRow's ), any other class, or a subclass, may write itself differently
+	//
+	private static boolean isFormatted(ITemperature t)
+	{
+		return t != null && ( t.getClass() == Temperature.class || t.getClass() == DeltaTemperature.class 
+				|| t.getClass() == TemperatureRow.class );
+	}
+	
+	
+	//
+	// when true, every report is written gzipped, with .gz added to its name
+	// files already open keep going the way they were opened
+	//
+	public synchronized void setCompressAll(boolean compressAll)
+	{
+		this.compressAll = compressAll;
+	}
+	
+	
+	//
+	// writes out everything still buffered, for every open file
+	//
+	public synchronized void flush() throws IOException
+	{
+		IOException failure = null;
+		
+		for ( Writer writer : writers.values() )
+		{
+			try
+			{
+				writer.flush();
+			}
+			catch (IOException x)
+			{
+				failure = x;
+			}
+		}
+		
+		if ( failure != null )
+		{
+			throw failure;
+		}
+	}
+	
+	
+	//
+	// flushes and closes every open file and stops the flush thread
+	// the writer can still be used afterwards, files are opened again as needed
+	//
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if ( flushTimer != null )
+		{
+			flushTimer.shutdownNow();
+			flushTimer = null;
+		}
+		
+		IOException failure = null;
+		
+		for ( Writer writer : writers.values() )
+		{
+			try
+			{
+				writer.close();
+			}
+			catch (IOException x)
+			{
+				failure = x;
+			}
+		}
+		
+		writers.clear();
+		
+		if ( failure != null )
+		{
+			throw failure;
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// returns the open writer for the file, opening it ( and the flush thread ) if needed
+	//
+	private Writer getWriter(String filename) throws IOException
+	{
+		if ( compressAll && ! filename.endsWith(".gz") )
+		{
+			filename += ".gz";
+		}
+		
+		Writer writer = writers.get(filename);
+		
+		if ( writer == null )
+		{
+			OutputStream out = new FileOutputStream(filename, true);
+			
+			// sync flush, so a time based flush actually gets the rows into the file
+			if ( filename.endsWith(".gz") )
+			{
+				out = new GZIPOutputStream(out, 64 * 1024, true);
+			}
+			
+			writer = new BufferedWriter( new OutputStreamWriter(out, Charset.defaultCharset()), flushChars );
+			
+			writers.put(filename, writer);
+			startFlushTimer();
+		}
+		
+		return writer;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// starts the background flush, once, if a flush interval was given
+	//
+	private void startFlushTimer()
+	{
+		if ( flushTimer != null || flushMillis == 0 )
+		{
+			return;
+		}
+		
+		flushTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "ReportWriter-flush");
+				thread.setDaemon(true);
+				
+				return thread;
+			}
+		});
+		
+		flushTimer.scheduleWithFixedDelay(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					flush();
+				}
+				catch (IOException x)
+				{
+					System.out.println(x.getMessage());
+				}
+			}
+		}, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,692 @@
+package climatechange;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+//
+// Compressed set of row ids
+//
+// the ids are split by their high 16 bits into containers of up to 65536 ids, each stored the smallest way:
+// 		an array of the low 16 bits ( up to 4096 ids, 2 bytes each )
+// 		a bitmap of all 65536 ( 8 KB, for dense containers )
+// 		runs of consecutive ids ( 4 bytes a run, i.e. data sorted by country is a few runs per country )
+//
+// and() and or() go container by container, word by word where they can,
+// so combining predicates never looks at a row
+//
+// ids are added in increasing order ( the order rows are appended to a table ),
+// optimize() picks the smallest form for the containers added to since it last ran
+// not thread safe
+//
+
+public class RowBitmap
+{
+	// an array container with more ids than this is bigger than a bitmap
+	private static final int ARRAY_MAX 		= 4096;
+	private static final int BITMAP_WORDS 	= 1024;
+	
+	private char[] 		keys;
+	private Container[] containers;
+	private int 		size;
+	private int 		optimized;
+	
+	
+	//
+	// default constructor, an empty set
+	//
+	public RowBitmap()
+	{
+		this.keys 		= new char[4];
+		this.containers = new Container[4];
+		this.size 		= 0;
+		this.optimized 	= 0;
+	}
+	
+	
+	//
+	// adds a row id, which can't be less than the last one added
+	//
+	public void add(int row)
+	{
+		char key = (char) (row >>> 16);
+		
+		if ( size == 0 || keys[size - 1] != key )
+		{
+			if ( size > 0 && keys[size - 1] > key )
+			{
+				throw new IllegalArgumentException("Rows have to be added in increasing order");
+			}
+			
+			append( key, new ArrayContainer() );
+		}
+		
+		containers[size - 1] = containers[size - 1].add( (char) row );
+	}
+	
+	
+	//
+	// true if the row id is in the set
+	//
+	public boolean contains(int row)
+	{
+		int index = Arrays.binarySearch( keys, 0, size, (char) (row >>> 16) );
+		
+		return index >= 0 && containers[index].contains( (char) row );
+	}
+	
+	
+	//
+	// number of row ids in the set
+	//
+	public int getCardinality()
+	{
+		int cardinality = 0;
+		
+		for ( int i = 0; i < size; i++ )
+		{
+			cardinality += containers[i].cardinality();
+		}
+		
+		return cardinality;
+	}
+	
+	
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+	
+	
+	//
+	// stores each container added to since the last call the smallest way
+	// ( the last one is checked again next time, it can still grow )
+	//
+	public void optimize()
+	{
+		for ( int i = Math.max(optimized - 1, 0); i < size; i++ )
+		{
+			long[] words = new long[BITMAP_WORDS];
+			
+			containers[i].orInto(words);
+			containers[i] = fromWords(words);
+		}
+		
+		optimized = size;
+	}
+	
+	
+	//
+	// a new set of the row ids in both a and b
+	//
+	public static RowBitmap and(RowBitmap a, RowBitmap b)
+	{
+		RowBitmap 	result 	= new RowBitmap();
+		int 		i 		= 0;
+		int 		j 		= 0;
+		
+		while ( i < a.size && j < b.size )
+		{
+			if ( a.keys[i] < b.keys[j] )
+			{
+				i++;
+			}
+			else if ( a.keys[i] > b.keys[j] )
+			{
+				j++;
+			}
+			else
+			{
+				Container both = and( a.containers[i], b.containers[j] );
+				
+				if ( both.cardinality() > 0 )
+				{
+					result.append( a.keys[i], both );
+				}
+				
+				i++;
+				j++;
+			}
+		}
+		
+		result.optimized = result.size;
+		
+		return result;
+	}
+	
+	
+	//
+	// a new set of the row ids in a or b, or both
+	//
+	public static RowBitmap or(RowBitmap a, RowBitmap b)
+	{
+		RowBitmap 	result 	= new RowBitmap();
+		int 		i 		= 0;
+		int 		j 		= 0;
+		
+		while ( i < a.size || j < b.size )
+		{
+			long[] 	words = new long[BITMAP_WORDS];
+			char 	key;
+			
+			// a container in only one of them is copied, so the result never shares one
+			if ( j >= b.size || ( i < a.size && a.keys[i] < b.keys[j] ) )
+			{
+				key = a.keys[i];
+				a.containers[i++].orInto(words);
+			}
+			else if ( i >= a.size || a.keys[i] > b.keys[j] )
+			{
+				key = b.keys[j];
+				b.containers[j++].orInto(words);
+			}
+			else
+			{
+				key = a.keys[i];
+				a.containers[i++].orInto(words);
+				b.containers[j++].orInto(words);
+			}
+			
+			result.append( key, fromWords(words) );
+		}
+		
+		result.optimized = result.size;
+		
+		return result;
+	}
+	
+	
+	//
+	// the row ids in increasing order
+	//
+	public PrimitiveIterator.OfInt iterator()
+	{
+		return iterator(0);
+	}
+	
+	
+	//
+	// the row ids from 'from' on, in increasing order
+	// ( it starts at from's container, the ones before it are never looked at )
+	//
+	public PrimitiveIterator.OfInt iterator(final int from)
+	{
+		final int first = Arrays.binarySearch( keys, 0, size, (char) (from >>> 16) );
+		
+		return new PrimitiveIterator.OfInt()
+		{
+			private int index 	= ( first >= 0 ) ? first : -first - 1;
+			private int next 	= findNext( ( first >= 0 ) ? from & 0xFFFF : 0 );
+			
+			
+			@Override
+			public boolean hasNext()
+			{
+				return next != -1;
+			}
+			
+			
+			@Override
+			public int nextInt()
+			{
+				if ( next == -1 )
+				{
+					throw new NoSuchElementException();
+				}
+				
+				int row = ( keys[index] << 16 ) | next;
+				
+				next = ( next == 0xFFFF ) ? -1 : findNext(next + 1);
+				
+				if ( next == -1 && index < size )
+				{
+					index++;
+					next = findNext(0);
+				}
+				
+				return row;
+			}
+			
+			
+			//
+			// the next low 16 bits at or after 'from' in the current container, or the first of the
+			// containers after it ( moving index ), or -1 when there are no more
+			//
+			private int findNext(int from)
+			{
+				while ( index < size )
+				{
+					int value = containers[index].nextValue(from);
+					
+					if ( value != -1 )
+					{
+						return value;
+					}
+					
+					index++;
+					from = 0;
+				}
+				
+				return -1;
+			}
+		};
+	}
+	
+	
+	//
+	// (Helper Method)
+	// adds a container after the last one
+	//
+	private void append(char key, Container container)
+	{
+		if ( size == keys.length )
+		{
+			keys 		= Arrays.copyOf( keys, size * 2 );
+			containers 	= Arrays.copyOf( containers, size * 2 );
+		}
+		
+		keys[size] 			= key;
+		containers[size] 	= container;
+		size++;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// ids in both containers, an array container's ids are looked up in the other one
+	// ( the result is never bigger than the smaller one ), otherwise word by word
+	//
+	private static Container and(Container a, Container b)
+	{
+		if ( b instanceof ArrayContainer && ! ( a instanceof ArrayContainer ) )
+		{
+			return and(b, a);
+		}
+		
+		if ( a instanceof ArrayContainer )
+		{
+			ArrayContainer array 	= (ArrayContainer) a;
+			ArrayContainer both 	= new ArrayContainer();
+			
+			for ( int i = 0; i < array.count; i++ )
+			{
+				if ( b.contains( array.values[i] ) )
+				{
+					both.add( array.values[i] );
+				}
+			}
+			
+			return both;
+		}
+		
+		long[] words 		= new long[BITMAP_WORDS];
+		long[] otherWords 	= new long[BITMAP_WORDS];
+		
+		a.orInto(words);
+		b.orInto(otherWords);
+		
+		for ( int i = 0; i < BITMAP_WORDS; i++ )
+		{
+			words[i] &= otherWords[i];
+		}
+		
+		return fromWords(words);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the smallest container holding the bits set in the words
+	//
+	private static Container fromWords(long[] words)
+	{
+		int cardinality = 0;
+		int runs 		= 0;
+		long previous 	= 0;
+		
+		for ( int i = 0; i < BITMAP_WORDS; i++ )
+		{
+			long word = words[i];
+			
+			cardinality += Long.bitCount(word);
+			
+			// a run starts at a set bit whose lower neighbour isn't set
+			runs += Long.bitCount( word & ~( (word << 1) | (previous >>> 63) ) );
+			
+			previous = word;
+		}
+		
+		int arrayBytes 	= cardinality * 2;
+		int runBytes 	= runs * 4;
+		int bitmapBytes = BITMAP_WORDS * 8;
+		
+		if ( runBytes < arrayBytes && runBytes < bitmapBytes )
+		{
+			RunContainer run = new RunContainer();
+			
+			for ( int value = nextSetBit(words, 0); value != -1; value = nextSetBit(words, value + 1) )
+			{
+				run.add( (char) value );
+			}
+			
+			return run;
+		}
+		
+		if ( cardinality <= ARRAY_MAX )
+		{
+			ArrayContainer array = new ArrayContainer();
+			
+			for ( int value = nextSetBit(words, 0); value != -1; value = nextSetBit(words, value + 1) )
+			{
+				array.add( (char) value );
+			}
+			
+			return array;
+		}
+		
+		return new BitmapContainer(words, cardinality);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the first set bit at or after 'from', or -1
+	//
+	private static int nextSetBit(long[] words, int from)
+	{
+		if ( from >= BITMAP_WORDS * 64 )
+		{
+			return -1;
+		}
+		
+		int 	index 	= from >>> 6;
+		long 	word 	= words[index] & ( -1L << from );
+		
+		while ( true )
+		{
+			if ( word != 0 )
+			{
+				return ( index << 6 ) + Long.numberOfTrailingZeros(word);
+			}
+			
+			if ( ++index == BITMAP_WORDS )
+			{
+				return -1;
+			}
+			
+			word = words[index];
+		}
+	}
+	
+	
+	//
+	// up to 65536 ids that share their high 16 bits, by their low 16 bits
+	//
+	private static abstract class Container
+	{
+		// adds a value not less than any already in, returns the container to use from now on
+		public abstract Container add(char value);
+		
+		public abstract boolean contains(char value);
+		
+		public abstract int cardinality();
+		
+		// the smallest value at or after 'from', or -1
+		public abstract int nextValue(int from);
+		
+		// sets the container's values in 1024 words
+		public abstract void orInto(long[] words);
+	}
+	
+	
+	//
+	// sorted array of values
+	//
+	private static class ArrayContainer extends Container
+	{
+		private char[] 	values 	= new char[4];
+		private int 	count 	= 0;
+		
+		
+		@Override
+		public Container add(char value)
+		{
+			if ( count == ARRAY_MAX )
+			{
+				long[] words = new long[BITMAP_WORDS];
+				orInto(words);
+				
+				return new BitmapContainer(words, count).add(value);
+			}
+			
+			if ( count == values.length )
+			{
+				values = Arrays.copyOf( values, Math.min(count * 2, ARRAY_MAX) );
+			}
+			
+			values[count++] = value;
+			
+			return this;
+		}
+		
+		
+		@Override
+		public boolean contains(char value)
+		{
+			return Arrays.binarySearch(values, 0, count, value) >= 0;
+		}
+		
+		
+		@Override
+		public int cardinality()
+		{
+			return count;
+		}
+		
+		
+		@Override
+		public int nextValue(int from)
+		{
+			int index = Arrays.binarySearch( values, 0, count, (char) from );
+			
+			if ( index < 0 )
+			{
+				index = -index - 1;
+			}
+			
+			return ( index < count ) ? values[index] : -1;
+		}
+		
+		
+		@Override
+		public void orInto(long[] words)
+		{
+			for ( int i = 0; i < count; i++ )
+			{
+				words[ values[i] >>> 6 ] |= 1L << values[i];
+			}
+		}
+	}
+	
+	
+	//
+	// one bit per value
+	//
+	private static class BitmapContainer extends Container
+	{
+		private long[] 	words;
+		private int 	cardinality;
+		
+		
+		private BitmapContainer(long[] words, int cardinality)
+		{
+			this.words 			= words;
+			this.cardinality 	= cardinality;
+		}
+		
+		
+		@Override
+		public Container add(char value)
+		{
+			if ( ! contains(value) )
+			{
+				words[ value >>> 6 ] |= 1L << value;
+				cardinality++;
+			}
+			
+			return this;
+		}
+		
+		
+		@Override
+		public boolean contains(char value)
+		{
+			return ( words[ value >>> 6 ] & ( 1L << value ) ) != 0;
+		}
+		
+		
+		@Override
+		public int cardinality()
+		{
+			return cardinality;
+		}
+		
+		
+		@Override
+		public int nextValue(int from)
+		{
+			return nextSetBit(words, from);
+		}
+		
+		
+		@Override
+		public void orInto(long[] words)
+		{
+			for ( int i = 0; i < BITMAP_WORDS; i++ )
+			{
+				words[i] |= this.words[i];
+			}
+		}
+	}
+	
+	
+	//
+	// runs of consecutive values, each a start and how many more values follow it
+	//
+	private static class RunContainer extends Container
+	{
+		private char[] 	starts 		= new char[4];
+		private char[] 	extents 	= new char[4];
+		private int 	runs 		= 0;
+		
+		
+		@Override
+		public Container add(char value)
+		{
+			if ( runs > 0 )
+			{
+				int end = starts[runs - 1] + extents[runs - 1];
+				
+				if ( value <= end )
+				{
+					return this;
+				}
+				
+				if ( value == end + 1 )
+				{
+					extents[runs - 1]++;
+					
+					return this;
+				}
+			}
+			
+			if ( runs == starts.length )
+			{
+				starts 	= Arrays.copyOf( starts, runs * 2 );
+				extents = Arrays.copyOf( extents, runs * 2 );
+			}
+			
+			starts[runs] 	= value;
+			extents[runs] 	= 0;
+			runs++;
+			
+			return this;
+		}
+		
+		
+		@Override
+		public boolean contains(char value)
+		{
+			int run = findRun(value);
+			
+			return run >= 0 && value <= starts[run] + extents[run];
+		}
+		
+		
+		@Override
+		public int cardinality()
+		{
+			int cardinality = 0;
+			
+			for ( int i = 0; i < runs; i++ )
+			{
+				cardinality += extents[i] + 1;
+			}
+			
+			return cardinality;
+		}
+		
+		
+		@Override
+		public int nextValue(int from)
+		{
+			int run = findRun(from);
+			
+			if ( run >= 0 && from <= starts[run] + extents[run] )
+			{
+				return from;
+			}
+			
+			return ( run + 1 < runs ) ? starts[run + 1] : -1;
+		}
+		
+		
+		@Override
+		public void orInto(long[] words)
+		{
+			for ( int i = 0; i < runs; i++ )
+			{
+				for ( int value = starts[i]; value <= starts[i] + extents[i]; value++ )
+				{
+					words[ value >>> 6 ] |= 1L << value;
+				}
+			}
+		}
+		
+		
+		//
+		// index of the last run starting at or before the value, or -1
+		//
+		private int findRun(int value)
+		{
+			int from 	= 0;
+			int to 		= runs;
+			
+			while ( from < to )
+			{
+				int mid = (from + to) >>> 1;
+				
+				if ( starts[mid] <= value )
+				{
+					from = mid + 1;
+				}
+				else
+				{
+					to = mid;
+				}
+			}
+			
+			return from - 1;
+		}
+	}
+}
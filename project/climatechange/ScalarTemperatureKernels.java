@@ -0,0 +1,83 @@
+package climatechange;
+
+//
+// The column kernels as plain loops, one value at a time ( see ITemperatureKernels )
+//
+// used when the Vector API kernels can't be loaded ( see TemperatureKernels ),
+// and for the tail of a range too short to fill a vector
+// the range mask builds each 64 bit word from the one before, so HotSpot runs it one value at a time,
+// the min / max and conversion loops are straight counted loops it may unroll
+//
+
+public class ScalarTemperatureKernels implements ITemperatureKernels
+{
+	@Override
+	public int getRangeMask(double[] values, int from, int to, double low, double high, long[] mask)
+	{
+		int count = 0;
+		
+		for ( int word = 0; from + (word << 6) < to; word++ )
+		{
+			int 	start 	= from + (word << 6);
+			int 	end 	= Math.min(start + 64, to);
+			long 	bits 	= 0;
+			
+			for ( int i = start; i < end; i++ )
+			{
+				double value = values[i];
+				
+				bits |= ( ( value >= low & value <= high ) ? 1L : 0L ) << (i - start);
+			}
+			
+			mask[word] 	= bits;
+			count 		+= Long.bitCount(bits);
+		}
+		
+		return count;
+	}
+	
+	
+	@Override
+	public double getMin(double[] values, int from, int to)
+	{
+		double min = Double.POSITIVE_INFINITY;
+		
+		for ( int i = from; i < to; i++ )
+		{
+			double value = values[i];
+			
+			min = ( value < min ) ? value : min;
+		}
+		
+		return min;
+	}
+	
+	
+	@Override
+	public double getMax(double[] values, int from, int to)
+	{
+		double max = Double.NEGATIVE_INFINITY;
+		
+		for ( int i = from; i < to; i++ )
+		{
+			double value = values[i];
+			
+			max = ( value > max ) ? value : max;
+		}
+		
+		return max;
+	}
+	
+	
+	//
+	// the same sum as Temperature.getTemperature(true)
+	//
+	@Override
+	public void toFahrenheit(double[] values, int from, int to, double[] out, int outFrom)
+	{
+		for ( int i = from; i < to; i++ )
+		{
+			out[outFrom + i - from] = (values[i] * (9.0/5.0)) + 32.0;
+		}
+	}
+}
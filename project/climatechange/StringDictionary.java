@@ -0,0 +1,184 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+//
+// Gives every distinct String an int id ( 0, 1, 2, ... in the order they were first added )
+// so a column can store ids instead of a String per row
+//
+// the case folded form of each entry is worked out once when it is added,
+// so an equalsIgnoreCase lookup only compares against the entries, never against the rows
+//
+// not thread safe
+//
+
+public class StringDictionary
+{
+	private ArrayList<String> 			values;
+	private ArrayList<String> 			foldedValues;
+	private HashMap<String, Integer> 	ids;
+	
+	// each id's place in compareTo order, worked out when first asked for after a new value
+	private int[] 						ranks;
+	
+	// rows usually repeat the value of the row before them ( i.e. the same country )
+	private String 	lastValue;
+	private int 	lastId;
+	
+	
+	//
+	// constructor takes in values that get the first ids, in order ( i.e. the months, so an id is the month's index )
+	//
+	public StringDictionary(String... seed)
+	{
+		this.values 		= new ArrayList<String>();
+		this.foldedValues 	= new ArrayList<String>();
+		this.ids 			= new HashMap<String, Integer>();
+		this.lastId 		= -1;
+		
+		for ( String value : seed )
+		{
+			add(value);
+		}
+	}
+	
+	
+	//
+	// returns the id of the value, giving it the next id if it's new
+	//
+	public int add(String value)
+	{
+		if ( value == lastValue )
+		{
+			return lastId;
+		}
+		
+		Integer id = ids.get(value);
+		
+		if ( id == null )
+		{
+			id = values.size();
+			
+			values.add(value);
+			foldedValues.add( foldCase(value) );
+			ids.put(value, id);
+			
+			ranks = null;
+		}
+		
+		lastValue 	= value;
+		lastId 		= id;
+		
+		return id;
+	}
+	
+	
+	//
+	// id of the value ( exact match ), or -1 if it isn't in the dictionary
+	//
+	public int indexOf(String value)
+	{
+		Integer id = ids.get(value);
+		
+		return ( id == null ) ? -1 : id;
+	}
+	
+	
+	//
+	// the value with that id
+	//
+	public String get(int id)
+	{
+		return values.get(id);
+	}
+	
+	
+	//
+	// the value with that id, case folded ( see foldCase )
+	//
+	public String getFolded(int id)
+	{
+		return foldedValues.get(id);
+	}
+	
+	
+	public int size()
+	{
+		return values.size();
+	}
+	
+	
+	//
+	// for each id, where its value comes in String.compareTo order ( 0 for the lowest )
+	// so rows can be ordered by comparing ints instead of their Strings
+	// the array is the dictionary's own, it's only for reading
+	//
+	public int[] getSortedRanks()
+	{
+		if ( ranks == null )
+		{
+			Integer[] sorted = new Integer[ values.size() ];
+			
+			for ( int id = 0; id < sorted.length; id++ )
+			{
+				sorted[id] = id;
+			}
+			
+			Arrays.sort(sorted, new Comparator<Integer>()
+			{
+				@Override
+				public int compare(Integer a, Integer b)
+				{
+					return values.get(a).compareTo( values.get(b) );
+				}
+			});
+			
+			ranks = new int[sorted.length];
+			
+			for ( int rank = 0; rank < sorted.length; rank++ )
+			{
+				ranks[ sorted[rank] ] = rank;
+			}
+		}
+		
+		return ranks;
+	}
+	
+	
+	//
+	// marks every id whose value equalsIgnoreCase the given value
+	// ( the array is indexed by id, there can be more than one i.e. "Chad" and "CHAD" )
+	//
+	public boolean[] matchIgnoreCase(String value)
+	{
+		String 		folded 	= foldCase(value);
+		boolean[] 	matches = new boolean[ values.size() ];
+		
+		for ( int id = 0; id < matches.length; id++ )
+		{
+			matches[id] = foldedValues.get(id).equals(folded);
+		}
+		
+		return matches;
+	}
+	
+	
+	//
+	// folds a String so that a.equalsIgnoreCase(b) is the same as foldCase(a).equals(foldCase(b))
+	// ( equalsIgnoreCase compares characters by their upper case, then by the lower case of that )
+	//
+	public static String foldCase(String s)
+	{
+		char[] chars = new char[ s.length() ];
+		
+		for ( int i = 0; i < chars.length; i++ )
+		{
+			chars[i] = Character.toLowerCase( Character.toUpperCase( s.charAt(i) ) );
+		}
+		
+		return new String(chars);
+	}
+}
@@ -1,6 +1,6 @@
 package climatechange;
 
-public class Temperature implements ITemperature, Comparable<Temperature>{
+public class Temperature implements ITemperature, Comparable<ITemperature>{
 	private double 		temperature;
 	private int 		year;
 	private String 		month;
@@ -100,12 +100,21 @@ public class Temperature implements ITemperature, Comparable<Temperature>{
 	// then compares country, then year, then month, then country code
 	//
 	@Override
-	public int compareTo(Temperature that) {
-		int temperatureDiff = (int) Math.signum(this.temperature - that.temperature);
-		int countryDiff 	= this.country.compareTo(that.country);
-		int yearDiff 		= (int) Math.signum(this.year - that.year);
-		int monthDiff		= this.month.compareTo(that.month);
-		int codeDiff 		= this.code.compareTo(that.code);
+	public int compareTo(ITemperature that) {
+		return compare(this, that);
+	}
+	
+	
+	//
+	// the compareTo order, for any two ITemperatures
+	// shared with TemperatureRow, so a row view and a Temperature with the same values are equal
+	//
+	public static int compare(ITemperature a, ITemperature b) {
+		int temperatureDiff = (int) Math.signum(a.getTemperature(false) - b.getTemperature(false));
+		int countryDiff 	= a.getCountry().compareTo(b.getCountry());
+		int yearDiff 		= (int) Math.signum(a.getYear() - b.getYear());
+		int monthDiff		= a.getMonth().compareTo(b.getMonth());
+		int codeDiff 		= a.getCountry3LetterCode().compareTo(b.getCountry3LetterCode());
 		
 		if ( temperatureDiff != 0 )
 		{
@@ -138,7 +147,12 @@ public class Temperature implements ITemperature, Comparable<Temperature>{
 	//
 	public boolean equals(Object x)
 	{
-		Temperature that = (Temperature) x;
+		if ( ! ( x instanceof ITemperature ) )
+		{
+			return false;
+		}
+		
+		ITemperature that = (ITemperature) x;
 		
 		if ( this.compareTo(that) != 0 )
 		{
@@ -155,8 +169,17 @@ public class Temperature implements ITemperature, Comparable<Temperature>{
 	//
 	public int hashCode()
 	{
-		return ( (int) temperature) + country.hashCode() 
-				+ year + month.hashCode() + code.hashCode();
+		return hashCode(this);
+	}
+	
+	
+	//
+	// the hashCode above, for any ITemperature ( see compare )
+	//
+	public static int hashCode(ITemperature t)
+	{
+		return ( (int) t.getTemperature(false)) + t.getCountry().hashCode() 
+				+ t.getYear() + t.getMonth().hashCode() + t.getCountry3LetterCode().hashCode();
 	}
 	
 	
@@ -168,12 +191,10 @@ public class Temperature implements ITemperature, Comparable<Temperature>{
 	// rounding method from slides and online forum:
 	// https://stackoverflow.com/questions/27832131/round-off-a-double-while-maintaining-the-trailing-zero
 	//
+	// built by TemperatureFormatter, same output as String.format("%.2f") without the Formatter overhead
+	//
 	public String toString()
 	{
-		String roundedCelsius 		= String.format("%.2f", getTemperature(false));
-		String roundedFahrenheit 	= String.format("%.2f", getTemperature(true));
-		
-		return roundedCelsius + "(C) " + roundedFahrenheit + "(F), " 
-				+ year + ", " + month + ", " + country + ", " + code;
+		return TemperatureFormatter.toRowString(this);
 	}
 }
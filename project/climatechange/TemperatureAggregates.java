@@ -0,0 +1,236 @@
+package climatechange;
+
+import java.util.ArrayList;
+
+//
+// Lowest row, highest row, count and sum of a TemperatureTable's rows,
+// kept per country, per country + year and per country + month
+//
+// built in one pass over the table, update() folds in rows appended since,
+// so every figure stays exact without going over the old rows again
+// ( a lowest or highest can only change to one of the new rows )
+//
+// groups are by country id, a country is looked up ignoring case,
+// so every id it matches ( i.e. "Chad" and "CHAD" ) is combined when a summary is made
+//
+// not thread safe
+//
+
+public class TemperatureAggregates
+{
+	private TemperatureTable 		table;
+	private int 					aggregatedRows;
+	
+	// by country id
+	private ArrayList<Aggregate> 	byCountry;
+	
+	// slots in 'groups', keyed by TemperatureKeyIndex.packKey with the month or year left at 0
+	private LongIntHashMap 			byCountryYear;
+	private LongIntHashMap 			byCountryMonth;
+	private ArrayList<Aggregate> 	groups;
+	
+	
+	//
+	// constructor takes in the table, and aggregates every row already in it
+	//
+	public TemperatureAggregates(TemperatureTable table)
+	{
+		this.table 			= table;
+		this.aggregatedRows = 0;
+		this.byCountry 		= new ArrayList<Aggregate>();
+		this.byCountryYear 	= new LongIntHashMap();
+		this.byCountryMonth = new LongIntHashMap();
+		this.groups 		= new ArrayList<Aggregate>();
+		
+		update();
+	}
+	
+	
+	//
+	// adds the rows appended to the table since the last update
+	//
+	public void update()
+	{
+		int rows = table.size();
+		
+		for ( int row = aggregatedRows; row < rows; row++ )
+		{
+			int countryId = table.getCountryId(row);
+			
+			while ( byCountry.size() <= countryId )
+			{
+				byCountry.add( new Aggregate() );
+			}
+			
+			byCountry.get(countryId).add(row);
+			getGroup( byCountryYear, TemperatureKeyIndex.packKey( countryId, table.getYear(row), 0 ) ).add(row);
+			getGroup( byCountryMonth, TemperatureKeyIndex.packKey( countryId, 0, table.getMonthId(row) ) ).add(row);
+		}
+		
+		aggregatedRows = rows;
+	}
+	
+	
+	//
+	// every row of the country ( ignoring case ), or null if it has none
+	//
+	public TemperatureSummary getByCountry(String country)
+	{
+		boolean[] 	matches = table.getCountryDictionary().matchIgnoreCase(country);
+		Aggregate 	total 	= new Aggregate();
+		
+		for ( int id = 0; id < matches.length && id < byCountry.size(); id++ )
+		{
+			if ( matches[id] )
+			{
+				total.add( byCountry.get(id) );
+			}
+		}
+		
+		return total.toSummary();
+	}
+	
+	
+	//
+	// the country's rows ( ignoring case ) in that year, or null if there are none
+	//
+	public TemperatureSummary getByYear(String country, int year)
+	{
+		boolean[] 	matches = table.getCountryDictionary().matchIgnoreCase(country);
+		Aggregate 	total 	= new Aggregate();
+		
+		for ( int id = 0; id < matches.length; id++ )
+		{
+			if ( matches[id] )
+			{
+				total.add( findGroup( byCountryYear, TemperatureKeyIndex.packKey(id, year, 0) ) );
+			}
+		}
+		
+		return total.toSummary();
+	}
+	
+	
+	//
+	// the country's rows ( ignoring case ) in that month ( a month id, see TemperatureTable ), every year,
+	// or null if there are none
+	//
+	public TemperatureSummary getByMonth(String country, int monthId)
+	{
+		boolean[] 	matches = table.getCountryDictionary().matchIgnoreCase(country);
+		Aggregate 	total 	= new Aggregate();
+		
+		for ( int id = 0; id < matches.length; id++ )
+		{
+			if ( matches[id] )
+			{
+				total.add( findGroup( byCountryMonth, TemperatureKeyIndex.packKey(id, 0, monthId) ) );
+			}
+		}
+		
+		return total.toSummary();
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the group for the key, made if it doesn't exist yet
+	//
+	private Aggregate getGroup(LongIntHashMap slots, long key)
+	{
+		int slot = slots.get(key);
+		
+		if ( slot == -1 )
+		{
+			slot = groups.size();
+			
+			groups.add( new Aggregate() );
+			slots.put(key, slot);
+		}
+		
+		return groups.get(slot);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the group for the key, or null if there isn't one
+	//
+	private Aggregate findGroup(LongIntHashMap slots, long key)
+	{
+		int slot = slots.get(key);
+		
+		return ( slot == -1 ) ? null : groups.get(slot);
+	}
+	
+	
+	//
+	// running figures for one group of rows
+	//
+	private class Aggregate
+	{
+		private int 	count;
+		private double 	sum;
+		private int 	lowestRow 	= -1;
+		private int 	highestRow 	= -1;
+		
+		
+		//
+		// adds one row of the table
+		//
+		public void add(int row)
+		{
+			if ( count == 0 || table.compareRows(row, lowestRow) < 0 )
+			{
+				lowestRow = row;
+			}
+			
+			if ( count == 0 || table.compareRows(row, highestRow) > 0 )
+			{
+				highestRow = row;
+			}
+			
+			count++;
+			sum += table.getTemperature(row);
+		}
+		
+		
+		//
+		// adds every row of another group ( nothing if it's null or empty )
+		//
+		public void add(Aggregate that)
+		{
+			if ( that == null || that.count == 0 )
+			{
+				return;
+			}
+			
+			if ( count == 0 || table.compareRows(that.lowestRow, lowestRow) < 0 )
+			{
+				lowestRow = that.lowestRow;
+			}
+			
+			if ( count == 0 || table.compareRows(that.highestRow, highestRow) > 0 )
+			{
+				highestRow = that.highestRow;
+			}
+			
+			count 	+= that.count;
+			sum 	+= that.sum;
+		}
+		
+		
+		//
+		// the figures with views of the lowest and highest rows, or null if there are no rows
+		//
+		public TemperatureSummary toSummary()
+		{
+			if ( count == 0 )
+			{
+				return null;
+			}
+			
+			return new TemperatureSummary( table.get(lowestRow), table.get(highestRow), count, sum );
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+//
+// Bitmap index of a TemperatureTable: for every month id, country id and year, the set of rows
+// that have it, as a compressed RowBitmap
+//
+// a query on more than one of them ANDs their sets ( and ORs the ids of a country spelled
+// more than one way ), so only the rows matching all of them are ever read
+//
+// the sets handed out are the index's own ( or new ones ), they're only for reading
+// update() adds the rows appended since the last call
+// not thread safe
+//
+
+public class TemperatureBitmapIndex
+{
+	private TemperatureTable 				table;
+	private int 							indexedRows;
+	
+	// by month id and by country id
+	private ArrayList<RowBitmap> 			byMonth;
+	private ArrayList<RowBitmap> 			byCountry;
+	private HashMap<Integer, RowBitmap> 	byYear;
+	
+	
+	//
+	// constructor takes in the table, and indexes every row already in it
+	//
+	public TemperatureBitmapIndex(TemperatureTable table)
+	{
+		this.table 			= table;
+		this.indexedRows 	= 0;
+		this.byMonth 		= new ArrayList<RowBitmap>();
+		this.byCountry 		= new ArrayList<RowBitmap>();
+		this.byYear 		= new HashMap<Integer, RowBitmap>();
+		
+		update();
+	}
+	
+	
+	//
+	// adds the rows appended to the table since the last update
+	//
+	public void update()
+	{
+		int rows = table.size();
+		
+		if ( rows == indexedRows )
+		{
+			return;
+		}
+		
+		for ( int row = indexedRows; row < rows; row++ )
+		{
+			getBitmap( byMonth, table.getMonthId(row) ).add(row);
+			getBitmap( byCountry, table.getCountryId(row) ).add(row);
+			
+			RowBitmap year = byYear.get( table.getYear(row) );
+			
+			if ( year == null )
+			{
+				year = new RowBitmap();
+				byYear.put( table.getYear(row), year );
+			}
+			
+			year.add(row);
+		}
+		
+		// only the containers the new rows went into are looked at again
+		for ( RowBitmap bitmap : byMonth )
+		{
+			bitmap.optimize();
+		}
+		
+		for ( RowBitmap bitmap : byCountry )
+		{
+			bitmap.optimize();
+		}
+		
+		for ( RowBitmap bitmap : byYear.values() )
+		{
+			bitmap.optimize();
+		}
+		
+		indexedRows = rows;
+	}
+	
+	
+	//
+	// rows with that month id ( empty if there are none )
+	//
+	public RowBitmap getMonth(int monthId)
+	{
+		return ( monthId >= 0 && monthId < byMonth.size() ) ? byMonth.get(monthId) : new RowBitmap();
+	}
+	
+	
+	//
+	// rows with any of the country ids marked ( see StringDictionary.matchIgnoreCase )
+	//
+	public RowBitmap getCountry(boolean[] countryIds)
+	{
+		RowBitmap rows = null;
+		
+		for ( int id = 0; id < countryIds.length && id < byCountry.size(); id++ )
+		{
+			if ( countryIds[id] )
+			{
+				rows = ( rows == null ) ? byCountry.get(id) : RowBitmap.or( rows, byCountry.get(id) );
+			}
+		}
+		
+		return ( rows == null ) ? new RowBitmap() : rows;
+	}
+	
+	
+	//
+	// rows with that year ( empty if there are none )
+	//
+	public RowBitmap getYear(int year)
+	{
+		RowBitmap rows = byYear.get(year);
+		
+		return ( rows == null ) ? new RowBitmap() : rows;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the bitmap for that id, made ( along with any before it ) if it doesn't exist yet
+	//
+	private static RowBitmap getBitmap(ArrayList<RowBitmap> bitmaps, int id)
+	{
+		while ( bitmaps.size() <= id )
+		{
+			bitmaps.add( new RowBitmap() );
+		}
+		
+		return bitmaps.get(id);
+	}
+}
@@ -0,0 +1,501 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+//
+// Every C-1 delta at once: for each country, month and pair of years, how much its temperature changed
+// ( the smallest change between its lowest and highest readings of the 2 years, like C-1 )
+//
+// built in one pass over the table into flat primitive arrays:
+// 		the lowest and highest row of each ( year, country, month ) cell
+// 		the deltas, a float per ( pair of years, month, country ), each month + pair's countries side by side
+// a pair is the same both ways round ( the change from 2000 to 2010 is the change from 2010 to 2000 ),
+// so only pairs with year1 <= year2 are kept, about 12 x 150 x the countries for 2000 - 2016
+//
+// getTop() reads one month + pair's deltas to find the countries that can be in the top K,
+// and only those go through a TemperatureTopK as DeltaTemperatures, built from their rows,
+// so the results are exactly the same as C-1 working them out from the rows every time
+//
+// update() adds rows appended to the table since: only the cells they land in change,
+// and only the deltas of pairs with one of those cells are worked out again
+// years are the outermost part of both arrays, so a new latest year only adds on to the end of them,
+// and there's room for a quarter more countries than when it was built
+// anything else ( an earlier year, more countries or months than there's room for ) means building it again
+//
+// countries are case folded, like TemperatureKeyIndex.getMinMaxRows
+// not thread safe
+//
+
+public class TemperatureDeltaMatrix
+{
+	// more deltas than this aren't kept ( i.e. data with a wide span of years ), see build
+	public static final long 			MAX_DELTAS 		= 16L * 1024 * 1024;
+	
+	private TemperatureTable 			table;
+	private int 						indexedRows;
+	
+	// by case folded country, its place in the matrix
+	private HashMap<String, Integer> 	folded;
+	
+	// by country id, its case folded country
+	private int[] 						foldedIds;
+	
+	// by case folded country, true if it's spelled more than one way
+	private boolean[] 					spellings;
+	
+	private int 						countryCount;
+	private int 						countryCapacity;
+	private int 						monthCount;
+	private int 						yearCount;
+	private int 						pairCount;
+	private int 						minYear;
+	
+	// by cell, ( year * countries + country ) * months + month, the lowest and highest row or -1
+	private int[] 						lowRows;
+	private int[] 						highRows;
+	
+	// by ( pair * months + month ) * countries + country, NaN if the country isn't in both years
+	private float[] 					deltas;
+	
+	
+	//
+	// (Helper Method)
+	// constructor takes in the table, room for how many countries and the span of years, and fills in the matrix
+	//
+	private TemperatureDeltaMatrix(TemperatureTable table, int countryCapacity, int minYear, int maxYear)
+	{
+		this.table 				= table;
+		this.indexedRows 		= 0;
+		this.folded 			= new HashMap<String, Integer>();
+		this.foldedIds 			= new int[0];
+		this.spellings 			= new boolean[countryCapacity];
+		this.countryCount 		= 0;
+		this.countryCapacity 	= countryCapacity;
+		this.monthCount 		= table.getMonthDictionary().size();
+		this.minYear 			= minYear;
+		this.yearCount 			= 0;
+		this.pairCount 			= 0;
+		this.lowRows 			= new int[0];
+		this.highRows 			= new int[0];
+		this.deltas 			= new float[0];
+		
+		addYears(maxYear);
+		
+		int[] 		cells 	= addRows();
+		boolean[] 	counted = new boolean[countryCapacity];
+		
+		// a new matrix only has to go through each country's pairs once
+		for ( int cell : cells )
+		{
+			int country = ( cell / monthCount ) % countryCapacity;
+			
+			if ( ! counted[country] )
+			{
+				counted[country] = true;
+				
+				for ( int month = 0; month < monthCount; month++ )
+				{
+					for ( int year1 = 0; year1 < yearCount; year1++ )
+					{
+						for ( int year2 = year1; year2 < yearCount; year2++ )
+						{
+							setDelta(country, month, year1 + minYear, year2 + minYear);
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	
+	//
+	// the matrix of every row in the table,
+	// or null if it would hold more than MAX_DELTAS ( C-1 is left to work the deltas out from the rows )
+	//
+	public static TemperatureDeltaMatrix build(TemperatureTable table)
+	{
+		if ( table.isEmpty() )
+		{
+			return null;
+		}
+		
+		HashMap<String, Boolean> 	countries 	= new HashMap<String, Boolean>();
+		int 						minYear 	= Integer.MAX_VALUE;
+		int 						maxYear 	= Integer.MIN_VALUE;
+		
+		for ( int id = 0; id < table.getCountryDictionary().size(); id++ )
+		{
+			countries.put( table.getCountryDictionary().getFolded(id), true );
+		}
+		
+		for ( int row = 0; row < table.size(); row++ )
+		{
+			minYear = Math.min( minYear, table.getYear(row) );
+			maxYear = Math.max( maxYear, table.getYear(row) );
+		}
+		
+		int countryCapacity = countries.size() + countries.size() / 4 + 1;
+		
+		if ( getDeltaCount( countryCapacity, table.getMonthDictionary().size(), (long) maxYear - minYear + 1 )
+				> MAX_DELTAS )
+		{
+			return null;
+		}
+		
+		return new TemperatureDeltaMatrix(table, countryCapacity, minYear, maxYear);
+	}
+	
+	
+	//
+	// adds the rows appended to the table since it was built or last updated,
+	// false ( and the matrix can't be used any more ) if it has to be built again
+	//
+	public boolean update()
+	{
+		int rows = table.size();
+		
+		if ( table.getMonthDictionary().size() > monthCount )
+		{
+			return false;
+		}
+		
+		for ( int row = indexedRows; row < rows; row++ )
+		{
+			int year = table.getYear(row);
+			
+			if ( year < minYear )
+			{
+				return false;
+			}
+			
+			if ( year - minYear >= yearCount && ! addYears(year) )
+			{
+				return false;
+			}
+		}
+		
+		int[] cells = addRows();
+		
+		if ( cells == null )
+		{
+			return false;
+		}
+		
+		// a cell's lowest or highest reading changed, so did its deltas with every other year
+		for ( int cell : cells )
+		{
+			int month 	= cell % monthCount;
+			int country = ( cell / monthCount ) % countryCapacity;
+			int year 	= cell / monthCount / countryCapacity + minYear;
+			
+			for ( int other = minYear; other - minYear < yearCount; other++ )
+			{
+				setDelta(country, month, year, other);
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	//
+	// true if any country has a reading in that month id and year
+	//
+	public boolean hasYear(int monthId, int year)
+	{
+		if ( ! isCell(monthId, year) )
+		{
+			return false;
+		}
+		
+		for ( int country = 0; country < countryCount; country++ )
+		{
+			if ( lowRows[ getCell(country, monthId, year) ] != -1 )
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	
+	//
+	// the K countries whose temperature in that month id changed the most between the 2 years,
+	// sorted low to high, the same as C-1 ( an empty list if no country has readings in both )
+	//
+	public ArrayList<ITemperature> getTop(int monthId, int year1, int year2, int k)
+	{
+		TemperatureTopK topData = new TemperatureTopK(k, false, true);
+		
+		if ( ! isCell(monthId, year1) || ! isCell(monthId, year2) )
+		{
+			return topData.getTop();
+		}
+		
+		int 		offset 		= getDeltas(monthId, year1, year2);
+		float[] 	present 	= new float[countryCount];
+		int 		count 		= 0;
+		
+		for ( int country = 0; country < countryCount; country++ )
+		{
+			float delta = deltas[offset + country];
+			
+			if ( ! Float.isNaN(delta) )
+			{
+				present[count++] = delta;
+			}
+		}
+		
+		// the K-th largest delta, no country below it can be in the top K
+		// ( rounding to a float keeps their order, so nothing that can be is left out )
+		Arrays.sort(present, 0, count);
+		
+		float threshold = ( count > k ) ? present[count - k] : Float.NEGATIVE_INFINITY;
+		
+		for ( int country = 0; country < countryCount; country++ )
+		{
+			float delta = deltas[offset + country];
+			
+			// a country spelled more than one way can be more than one reading in the top K, so it always goes in
+			if ( delta >= threshold
+					|| ( spellings[country] && ! Float.isNaN(delta) )
+					|| isMissingDelta(country, monthId, year1, year2) )
+			{
+				addDeltas( topData, getCell(country, monthId, year1), getCell(country, monthId, year2) );
+			}
+		}
+		
+		return topData.getTop();
+	}
+	
+	
+	//
+	// (Helper Method)
+	// puts the rows since the last update in their cells, in one pass,
+	// returns the cells whose lowest or highest row changed, or null if there are more countries than room
+	//
+	private int[] addRows()
+	{
+		if ( ! addCountries() )
+		{
+			return null;
+		}
+		
+		int 		rows 		= table.size();
+		boolean[] 	changed 	= new boolean[ lowRows.length ];
+		int[] 		cells 		= new int[ Math.min( rows - indexedRows, lowRows.length ) ];
+		int 		count 		= 0;
+		
+		for ( int row = indexedRows; row < rows; row++ )
+		{
+			int cell 	= getCell( foldedIds[ table.getCountryId(row) ], table.getMonthId(row), table.getYear(row) );
+			int low 	= lowRows[cell];
+			int high 	= highRows[cell];
+			
+			if ( lowRows[cell] == -1 )
+			{
+				lowRows[cell] 	= row;
+				highRows[cell] 	= row;
+			}
+			else
+			{
+				if ( table.compareRows(row, lowRows[cell]) < 0 )
+				{
+					lowRows[cell] = row;
+				}
+				
+				if ( table.compareRows(row, highRows[cell]) > 0 )
+				{
+					highRows[cell] = row;
+				}
+			}
+			
+			if ( ! changed[cell] && ( lowRows[cell] != low || highRows[cell] != high ) )
+			{
+				changed[cell] 	= true;
+				cells[count++] 	= cell;
+			}
+		}
+		
+		indexedRows = rows;
+		
+		return Arrays.copyOf(cells, count);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// gives country ids added to the dictionary since the last update their place,
+	// false if there are more case folded countries than room for them
+	//
+	private boolean addCountries()
+	{
+		StringDictionary 	countries 	= table.getCountryDictionary();
+		int 				oldLength 	= foldedIds.length;
+		
+		foldedIds = Arrays.copyOf( foldedIds, countries.size() );
+		
+		for ( int id = oldLength; id < foldedIds.length; id++ )
+		{
+			Integer country = folded.get( countries.getFolded(id) );
+			
+			if ( country == null )
+			{
+				if ( countryCount == countryCapacity )
+				{
+					return false;
+				}
+				
+				country = countryCount++;
+				folded.put( countries.getFolded(id), country );
+			}
+			else
+			{
+				spellings[country] = true;
+			}
+			
+			foldedIds[id] = country;
+		}
+		
+		return true;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// makes room for every year up to maxYear on the end of the arrays,
+	// false if that would be more than MAX_DELTAS
+	//
+	private boolean addYears(int maxYear)
+	{
+		int 	oldCells 	= lowRows.length;
+		int 	oldDeltas 	= deltas.length;
+		long 	years 		= (long) maxYear - minYear + 1;
+		
+		if ( getDeltaCount(countryCapacity, monthCount, years) > MAX_DELTAS )
+		{
+			return false;
+		}
+		
+		yearCount 	= (int) years;
+		pairCount 	= yearCount * (yearCount + 1) / 2;
+		lowRows 	= Arrays.copyOf( lowRows, yearCount * countryCapacity * monthCount );
+		highRows 	= Arrays.copyOf( highRows, lowRows.length );
+		deltas 		= Arrays.copyOf( deltas, pairCount * monthCount * countryCapacity );
+		
+		Arrays.fill(lowRows, oldCells, lowRows.length, -1);
+		Arrays.fill(highRows, oldCells, highRows.length, -1);
+		Arrays.fill(deltas, oldDeltas, deltas.length, Float.NaN);
+		
+		return true;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// works out one delta, the smallest change between the lowest and highest readings of the 2 years
+	// ( NaN if the country isn't in both )
+	//
+	private void setDelta(int country, int monthId, int year1, int year2)
+	{
+		int 	cell1 	= getCell(country, monthId, year1);
+		int 	cell2 	= getCell(country, monthId, year2);
+		float 	delta 	= Float.NaN;
+		
+		if ( lowRows[cell1] != -1 && lowRows[cell2] != -1 )
+		{
+			double low1 	= table.getTemperature( lowRows[cell1] );
+			double high1 	= table.getTemperature( highRows[cell1] );
+			double low2 	= table.getTemperature( lowRows[cell2] );
+			double high2 	= table.getTemperature( highRows[cell2] );
+			
+			delta = (float) Math.min(
+					Math.min( Math.abs(low1 - low2), Math.abs(low1 - high2) ),
+					Math.min( Math.abs(high1 - low2), Math.abs(high1 - high2) ) );
+		}
+		
+		deltas[ getDeltas(monthId, year1, year2) + country ] = delta;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// adds the deltas between the 2 cells' lowest and highest readings, the same 4 C-1 adds
+	//
+	private void addDeltas(TemperatureTopK topData, int cell1, int cell2)
+	{
+		if ( lowRows[cell1] == -1 || lowRows[cell2] == -1 )
+		{
+			return;
+		}
+		
+		for ( int t : new int[] { lowRows[cell1], highRows[cell1] } )
+		{
+			for ( int x : new int[] { lowRows[cell2], highRows[cell2] } )
+			{
+				topData.add( new DeltaTemperature( table.get(t), table.get(x) ) );
+			}
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// true if the country has readings in both years, but a temperature that's not a number
+	// ( its delta is NaN, so its place can't be told from the matrix )
+	//
+	private boolean isMissingDelta(int country, int monthId, int year1, int year2)
+	{
+		return Float.isNaN( deltas[ getDeltas(monthId, year1, year2) + country ] )
+				&& lowRows[ getCell(country, monthId, year1) ] != -1
+				&& lowRows[ getCell(country, monthId, year2) ] != -1;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// true if the month id and year are in the matrix
+	//
+	private boolean isCell(int monthId, int year)
+	{
+		return monthId >= 0 && monthId < monthCount && year >= minYear && year - minYear < yearCount;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// where the cell for the country, month id and year is
+	//
+	private int getCell(int country, int monthId, int year)
+	{
+		return ( ( year - minYear ) * countryCapacity + country ) * monthCount + monthId;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// where the month's deltas for the pair of years start, either way round
+	// ( pairs are in order of their later year, so a new year's pairs go on the end )
+	//
+	private int getDeltas(int monthId, int year1, int year2)
+	{
+		int first 	= Math.min(year1, year2) - minYear;
+		int second 	= Math.max(year1, year2) - minYear;
+		int pair 	= second * (second + 1) / 2 + first;
+		
+		return ( pair * monthCount + monthId ) * countryCapacity;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// how many deltas a matrix with room for that many countries, months and years holds
+	//
+	private static long getDeltaCount(long countries, long months, long years)
+	{
+		return months * ( years * (years + 1) / 2 ) * countries;
+	}
+}
@@ -0,0 +1,234 @@
+package climatechange;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+//
+// Builds the output row for a temperature:
+// [temp in Celsius(C)] [temp in Fahrenheit(F)], [year], [month], [country], [code]
+// i.e. 21.34(C) 70.42(F), 2000, Jan, Afghanistan, AFG
+//
+// the row is written into a reusable char buffer instead of going through String.format,
+// the output is exactly what String.format("%.2f", ...) and string concatenation would produce
+//
+// not thread safe, each thread should use its own formatter
+// ( toRowString uses one per thread, for the rows' toString )
+//
+
+public class TemperatureFormatter
+{
+	// values at or above this ( in hundredths ) aren't exact enough to round by hand
+	private static final double MAX_FAST_HUNDREDTHS 	= 1e9;
+	
+	// how close to a half hundredth a value has to be before rounding it is left to String.format
+	private static final double HALF_TOLERANCE 			= 1e-5;
+	
+	// each thread's formatter for toRowString, made the first time the thread asks
+	private static final ThreadLocal<TemperatureFormatter> THREAD_FORMATTER = new ThreadLocal<TemperatureFormatter>()
+	{
+		@Override
+		protected TemperatureFormatter initialValue()
+		{
+			return new TemperatureFormatter();
+		}
+	};
+	
+	private char[] 	buf;
+	private int 	length;
+	private boolean fastPath;
+	
+	
+	//
+	// default constructor
+	// rounding by hand is only used when the default locale writes numbers as 1234.56
+	//
+	public TemperatureFormatter()
+	{
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance( Locale.getDefault(Locale.Category.FORMAT) );
+		
+		this.buf 		= new char[128];
+		this.length 	= 0;
+		this.fastPath 	= symbols.getDecimalSeparator() == '.' && symbols.getZeroDigit() == '0';
+	}
+	
+	
+	//
+	// formats the row for t into the buffer, returns its length
+	// the characters are in getChars() until the next call
+	//
+	public int format(ITemperature t)
+	{
+		length = 0;
+		
+		appendFixed2( t.getTemperature(false) );
+		append("(C) ");
+		appendFixed2( t.getTemperature(true) );
+		append("(F), ");
+		appendInt( t.getYear() );
+		append(", ");
+		append( t.getMonth() );
+		append(", ");
+		append( t.getCountry() );
+		append(", ");
+		append( t.getCountry3LetterCode() );
+		
+		return length;
+	}
+	
+	
+	//
+	// the row for t as a String, formatted with this thread's own formatter
+	// so only the String itself is made per call ( the locale is looked at once per thread )
+	//
+	public static String toRowString(ITemperature t)
+	{
+		TemperatureFormatter formatter = THREAD_FORMATTER.get();
+		
+		formatter.format(t);
+		
+		return formatter.toString();
+	}
+	
+	
+	//
+	// buffer holding the last formatted row, valid up to the length format() returned
+	//
+	public char[] getChars()
+	{
+		return buf;
+	}
+	
+	
+	//
+	// the last formatted row as a String
+	//
+	public String toString()
+	{
+		return new String(buf, 0, length);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// appends the value rounded half up to 2 decimal places, like "%.2f"
+	//
+	// String.format rounds the shortest decimal form of the double ( Double.toString's digits ),
+	// which only differs from rounding value * 100 when the value is right on a half hundredth,
+	// those values ( and NaN, infinities, huge values ) are left to String.format
+	//
+	private void appendFixed2(double value)
+	{
+		double hundredths = Math.abs(value) * 100.0;
+		
+		if ( ! fastPath || ! ( hundredths < MAX_FAST_HUNDREDTHS ) )
+		{
+			append( String.format("%.2f", value) );
+			return;
+		}
+		
+		double whole 	= Math.floor(hundredths);
+		double fraction = hundredths - whole;
+		
+		if ( Math.abs(fraction - 0.5) < HALF_TOLERANCE )
+		{
+			append( String.format("%.2f", value) );
+			return;
+		}
+		
+		long rounded = (long) whole + ( fraction > 0.5 ? 1 : 0 );
+		
+		// "%.2f" keeps the sign of anything negative, even when it rounds to 0.00 ( and of -0.0 )
+		if ( Double.doubleToRawLongBits(value) < 0 )
+		{
+			append('-');
+		}
+		
+		appendLong(rounded / 100);
+		append('.');
+		append( (char) ('0' + (rounded / 10) % 10) );
+		append( (char) ('0' + rounded % 10) );
+	}
+	
+	
+	//
+	// (Helper Method)
+	// appends the decimal digits of an int, with a '-' if it is negative
+	//
+	private void appendInt(int value)
+	{
+		if ( value < 0 )
+		{
+			append('-');
+			
+			// Integer.MIN_VALUE can't be negated as an int
+			appendLong( -(long) value );
+		}
+		else
+		{
+			appendLong(value);
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// appends the decimal digits of a value that isn't negative
+	//
+	private void appendLong(long value)
+	{
+		int digits = 1;
+		
+		for ( long rest = value / 10; rest > 0; rest /= 10 )
+		{
+			digits++;
+		}
+		
+		ensureRoom(digits);
+		
+		for ( int i = length + digits - 1; i >= length; i-- )
+		{
+			buf[i] 	= (char) ('0' + value % 10);
+			value 	/= 10;
+		}
+		
+		length += digits;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// copies the characters of s into the buffer
+	//
+	private void append(String s)
+	{
+		ensureRoom( s.length() );
+		s.getChars(0, s.length(), buf, length);
+		length += s.length();
+	}
+	
+	
+	//
+	// (Helper Method)
+	//
+	private void append(char c)
+	{
+		ensureRoom(1);
+		buf[length++] = c;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// grows the buffer when a long country name doesn't fit
+	//
+	private void ensureRoom(int count)
+	{
+		if ( length + count > buf.length )
+		{
+			char[] bigger = new char[ Math.max(buf.length * 2, length + count) ];
+			
+			System.arraycopy(buf, 0, bigger, 0, length);
+			buf = bigger;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package climatechange;
+
+import java.util.Arrays;
+
+//
+// Scans over a primitive column ( i.e. TemperatureTable's temperatures ) that touch every row:
+// 		a range mask, one bit per row in [low, high]
+// 		the lowest and highest value, NaN left out
+// 		Celsius to Fahrenheit, a whole range at once
+//
+// runs the Vector API kernels ( VectorTemperatureKernels ) when they were compiled in
+// and the JVM was started with --add-modules jdk.incubator.vector,
+// otherwise the plain loops of ScalarTemperatureKernels, which give the same answers
+// the kernels are picked once, when this class loads
+//
+// main times both sets on a data file, see below
+//
+
+public class TemperatureKernels
+{
+	// loaded by name, it can't be compiled without the incubator module
+	public static final String 						VECTOR_KERNELS 	= "climatechange.VectorTemperatureKernels";
+	
+	private static final ITemperatureKernels 		VECTOR 			= loadVectorKernels();
+	private static final ITemperatureKernels 		KERNELS 		= ( VECTOR != null ) ? VECTOR
+			: new ScalarTemperatureKernels();
+	
+	// passes over the column before timing, then timed
+	private static final int 						WARMUP_PASSES 	= 50;
+	private static final int 						TIMED_PASSES 	= 100;
+	
+	// the benchmark's results go here, so they aren't optimized away
+	private static volatile double 					sink;
+	
+	
+	//
+	// (Helper Method)
+	// the Vector API kernels, or null if the class isn't there or the module isn't enabled
+	//
+	private static ITemperatureKernels loadVectorKernels()
+	{
+		try
+		{
+			return (ITemperatureKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError x)
+		{
+			return null;
+		}
+	}
+	
+	
+	//
+	// true if the Vector API kernels are the ones running
+	//
+	public static boolean isVectorized()
+	{
+		return VECTOR != null;
+	}
+	
+	
+	//
+	// see ITemperatureKernels
+	//
+	public static int getRangeMask(double[] values, int from, int to, double low, double high, long[] mask)
+	{
+		return KERNELS.getRangeMask(values, from, to, low, high, mask);
+	}
+	
+	
+	public static double getMin(double[] values, int from, int to)
+	{
+		return KERNELS.getMin(values, from, to);
+	}
+	
+	
+	public static double getMax(double[] values, int from, int to)
+	{
+		return KERNELS.getMax(values, from, to);
+	}
+	
+	
+	public static void toFahrenheit(double[] values, int from, int to, double[] out, int outFrom)
+	{
+		KERNELS.toFahrenheit(values, from, to, out, outFrom);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// runs one kernel over the whole column, returns a value from its result
+	//
+	private static double runKernel(ITemperatureKernels kernels, String kernel, double[] values, long[] mask,
+			double[] out)
+	{
+		switch ( kernel )
+		{
+			case "range mask":
+				return kernels.getRangeMask(values, 0, values.length, 10.0, 20.0, mask);
+			
+			case "min":
+				return kernels.getMin(values, 0, values.length);
+			
+			case "max":
+				return kernels.getMax(values, 0, values.length);
+			
+			default:
+				kernels.toFahrenheit(values, 0, values.length, out, 0);
+				return out[values.length - 1];
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// average milliseconds per pass of one kernel over the whole column
+	//
+	private static double timeKernel(ITemperatureKernels kernels, String kernel, double[] values, long[] mask,
+			double[] out)
+	{
+		for ( int pass = 0; pass < WARMUP_PASSES; pass++ )
+		{
+			sink += runKernel(kernels, kernel, values, mask, out);
+		}
+		
+		long start = System.nanoTime();
+		
+		for ( int pass = 0; pass < TIMED_PASSES; pass++ )
+		{
+			sink += runKernel(kernels, kernel, values, mask, out);
+		}
+		
+		return (System.nanoTime() - start) / 1e6 / TIMED_PASSES;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// true if both kernel sets give the same result over the whole column
+	//
+	private static boolean isSameResult(String kernel, double[] values)
+	{
+		long[] 		scalarMask 	= new long[(values.length + 63) / 64];
+		long[] 		vectorMask 	= new long[scalarMask.length];
+		double[] 	scalarOut 	= new double[values.length];
+		double[] 	vectorOut 	= new double[values.length];
+		
+		double scalar = runKernel(new ScalarTemperatureKernels(), kernel, values, scalarMask, scalarOut);
+		double vector = runKernel(VECTOR, kernel, values, vectorMask, vectorOut);
+		
+		return scalar == vector && Arrays.equals(scalarMask, vectorMask) && Arrays.equals(scalarOut, vectorOut);
+	}
+	
+	
+	//
+	// benchmarks the kernels against each other over the temperature column of a data file:
+	// java [--add-modules jdk.incubator.vector] climatechange.TemperatureKernels <data file>
+	// ( without the module only the scalar kernels are timed )
+	//
+	public static void main(String[] args)
+	{
+		if ( args.length != 1 )
+		{
+			System.out.println("Usage: java [--add-modules jdk.incubator.vector] climatechange.TemperatureKernels "
+					+ "<data file>");
+			return;
+		}
+		
+		TemperatureTable data = new WeatherIO().readDataFromMappedFile( args[0],
+				Runtime.getRuntime().availableProcessors() );
+		
+		if ( data == null )
+		{
+			return;
+		}
+		
+		double[] 	values 	= new double[data.size()];
+		long[] 		mask 	= new long[(values.length + 63) / 64];
+		double[] 	out 	= new double[values.length];
+		
+		data.getTemperatures(0, values.length, false, values, 0);
+		
+		System.out.println(values.length + " rows, " + ( isVectorized() ? "Vector API kernels loaded"
+				: "Vector API kernels not loaded, scalar only" ));
+		
+		for ( String kernel : new String[] { "range mask", "min", "max", "to Fahrenheit" } )
+		{
+			String line = kernel + ": scalar "
+					+ String.format("%.3f", timeKernel(new ScalarTemperatureKernels(), kernel, values, mask, out))
+					+ " ms";
+			
+			if ( isVectorized() )
+			{
+				line += ", vector " + String.format("%.3f", timeKernel(VECTOR, kernel, values, mask, out)) + " ms"
+						+ ( isSameResult(kernel, values) ? "" : " ( DIFFERENT RESULT )" );
+			}
+			
+			System.out.println(line);
+		}
+	}
+}
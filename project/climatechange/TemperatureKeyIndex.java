@@ -0,0 +1,278 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+//
+// Index of a TemperatureTable's rows by ( country, year, month ),
+// packed into one long key ( see packKey ) in a LongIntHashMap, nothing is boxed
+//
+// the map holds the first row for each key, and rows with the same key are chained through nextRows,
+// so data with a repeated reading still finds every row
+//
+// point lookups are one map lookup per matching country id ( a country is matched ignoring case ),
+// a country + month slice looks up each year the country has data for,
+// and a country + year slice looks up each month
+//
+// update() indexes rows appended to the table since the last call
+// not thread safe
+//
+
+public class TemperatureKeyIndex
+{
+	// country ids above this don't fit in the packed key
+	private static final int MAX_COUNTRY_ID = (1 << 23) - 1;
+	
+	private TemperatureTable 	table;
+	private LongIntHashMap 		firstRows;
+	private int[] 				nextRows;
+	private int 				indexedRows;
+	
+	// by country id: how many rows, and the years they cover
+	private int[] countryRows;
+	private int[] countryMinYear;
+	private int[] countryMaxYear;
+	
+	
+	//
+	// constructor takes in the table, and indexes every row already in it
+	//
+	public TemperatureKeyIndex(TemperatureTable table)
+	{
+		this.table 			= table;
+		this.firstRows 		= new LongIntHashMap( table.size() );
+		this.nextRows 		= new int[ Math.max(table.size(), 1) ];
+		this.indexedRows 	= 0;
+		this.countryRows 	= new int[0];
+		this.countryMinYear = new int[0];
+		this.countryMaxYear = new int[0];
+		
+		update();
+	}
+	
+	
+	//
+	// indexes the rows added to the table since the index was built or last updated
+	//
+	public void update()
+	{
+		int rows = table.size();
+		
+		if ( rows > nextRows.length )
+		{
+			nextRows = Arrays.copyOf( nextRows, Math.max(rows, nextRows.length + (nextRows.length >> 1)) );
+		}
+		
+		growCountries( table.getCountryDictionary().size() );
+		
+		for ( int row = indexedRows; row < rows; row++ )
+		{
+			int countryId 	= table.getCountryId(row);
+			int year 		= table.getYear(row);
+			
+			nextRows[row] = firstRows.put( packKey( countryId, year, table.getMonthId(row) ), row );
+			
+			countryMinYear[countryId] = ( countryRows[countryId] == 0 ) ? year : Math.min(countryMinYear[countryId], year);
+			countryMaxYear[countryId] = ( countryRows[countryId] == 0 ) ? year : Math.max(countryMaxYear[countryId], year);
+			countryRows[countryId]++;
+		}
+		
+		indexedRows = rows;
+	}
+	
+	
+	//
+	// true if any row has the country ( compared ignoring case )
+	//
+	public boolean hasCountry(String country)
+	{
+		boolean[] matches = table.getCountryDictionary().matchIgnoreCase(country);
+		
+		for ( int id = 0; id < matches.length; id++ )
+		{
+			if ( matches[id] && id < countryRows.length && countryRows[id] > 0 )
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	
+	//
+	// views of every row with that country ( ignoring case ), year and month id
+	// usually one row, empty if there are none
+	//
+	public ArrayList<ITemperature> getRows(String country, int year, int monthId)
+	{
+		ArrayList<ITemperature> 	rows 		= new ArrayList<ITemperature>();
+		boolean[] 					matches 	= table.getCountryDictionary().matchIgnoreCase(country);
+		
+		for ( int id = 0; id < matches.length; id++ )
+		{
+			if ( matches[id] )
+			{
+				addRows(rows, id, year, monthId);
+			}
+		}
+		
+		return rows;
+	}
+	
+	
+	//
+	// views of every row with that country ( ignoring case ) and month id, for every year
+	//
+	public ArrayList<ITemperature> getRowsByMonth(String country, int monthId)
+	{
+		ArrayList<ITemperature> 	rows 		= new ArrayList<ITemperature>();
+		boolean[] 					matches 	= table.getCountryDictionary().matchIgnoreCase(country);
+		
+		for ( int id = 0; id < matches.length && id < countryRows.length; id++ )
+		{
+			if ( matches[id] && countryRows[id] > 0 )
+			{
+				// long, so a max year of Integer.MAX_VALUE still ends the loop
+				for ( long year = countryMinYear[id]; year <= countryMaxYear[id]; year++ )
+				{
+					addRows(rows, id, (int) year, monthId);
+				}
+			}
+		}
+		
+		return rows;
+	}
+	
+	
+	//
+	// views of every row with that country ( ignoring case ) and year, for every month
+	//
+	public ArrayList<ITemperature> getRowsByYear(String country, int year)
+	{
+		ArrayList<ITemperature> 	rows 		= new ArrayList<ITemperature>();
+		boolean[] 					matches 	= table.getCountryDictionary().matchIgnoreCase(country);
+		int 						monthIds 	= table.getMonthDictionary().size();
+		
+		for ( int id = 0; id < matches.length; id++ )
+		{
+			if ( matches[id] )
+			{
+				for ( int monthId = 0; monthId < monthIds; monthId++ )
+				{
+					addRows(rows, id, year, monthId);
+				}
+			}
+		}
+		
+		return rows;
+	}
+	
+	
+	//
+	// the first row with that country id, year and month id, or -1 if there are none
+	// the rest follow with getNextRow
+	//
+	public int getFirstRow(int countryId, int year, int monthId)
+	{
+		return firstRows.get( packKey(countryId, year, monthId) );
+	}
+	
+	
+	//
+	// the next row with the same key as the row, or -1 if it was the last
+	//
+	public int getNextRow(int row)
+	{
+		return nextRows[row];
+	}
+	
+	
+	//
+	// the lowest and highest row ( by compareRows ) of each country in that year and month id,
+	// keyed by the case folded country, so spellings that only differ in case are one country
+	//
+	// one lookup per country id, the rows of other years and months are never read
+	//
+	public HashMap<String, int[]> getMinMaxRows(int year, int monthId)
+	{
+		HashMap<String, int[]> minMaxRows = new HashMap<String, int[]>();
+		
+		for ( int id = 0; id < countryRows.length; id++ )
+		{
+			if ( countryRows[id] == 0 || year < countryMinYear[id] || year > countryMaxYear[id] )
+			{
+				continue;
+			}
+			
+			for ( int row = firstRows.get( packKey(id, year, monthId) ); row != -1; row = nextRows[row] )
+			{
+				String 	country 	= table.getCountryDictionary().getFolded(id);
+				int[] 	minMax 		= minMaxRows.get(country);
+				
+				if ( minMax == null )
+				{
+					minMaxRows.put( country, new int[] { row, row } );
+				}
+				else
+				{
+					if ( table.compareRows(row, minMax[0]) < 0 )
+					{
+						minMax[0] = row;
+					}
+					
+					if ( table.compareRows(row, minMax[1]) > 0 )
+					{
+						minMax[1] = row;
+					}
+				}
+			}
+		}
+		
+		return minMaxRows;
+	}
+	
+	
+	//
+	// packs a country id ( 23 bits ), a year ( 32 bits ) and a month id ( 8 bits ) into one key
+	// the top bit is always 0, so a key is never negative
+	//
+	public static long packKey(int countryId, int year, int monthId)
+	{
+		if ( countryId > MAX_COUNTRY_ID )
+		{
+			throw new IllegalArgumentException("More than " + MAX_COUNTRY_ID + " countries can't be indexed");
+		}
+		
+		return ( (long) countryId << 40 ) | ( (year & 0xFFFFFFFFL) << 8 ) | monthId;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// adds a view of every row with that exact key
+	//
+	private void addRows(ArrayList<ITemperature> rows, int countryId, int year, int monthId)
+	{
+		for ( int row = firstRows.get( packKey(countryId, year, monthId) ); row != -1; row = nextRows[row] )
+		{
+			rows.add( table.get(row) );
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// makes room in the per country arrays for every id in the dictionary
+	//
+	private void growCountries(int countries)
+	{
+		if ( countries > countryRows.length )
+		{
+			countryRows 	= Arrays.copyOf(countryRows, countries);
+			countryMinYear 	= Arrays.copyOf(countryMinYear, countries);
+			countryMaxYear 	= Arrays.copyOf(countryMaxYear, countries);
+		}
+	}
+}
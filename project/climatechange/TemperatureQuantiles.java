@@ -0,0 +1,204 @@
+package climatechange;
+
+import java.util.ArrayList;
+
+//
+// Quantile sketches ( see QuantileSketch ) of a TemperatureTable's temperatures,
+// kept per country, per country + month, per month, and for every row
+// so a median or a 90th / 99th percentile comes from a few hundred values instead of sorting the rows
+//
+// built in one pass over the table, update() adds rows appended since
+//
+// groups are by country id, a country is looked up ignoring case,
+// so every id it matches ( i.e. "Chad" and "CHAD" ) is merged into one sketch when it's asked for
+// a sketch handed out can be the index's own, it's only for reading
+//
+// not thread safe
+//
+
+public class TemperatureQuantiles
+{
+	private TemperatureTable 			table;
+	private int 						sketchedRows;
+	
+	private QuantileSketch 				all;
+	
+	// by country id, and by month id
+	private ArrayList<QuantileSketch> 	byCountry;
+	private ArrayList<QuantileSketch> 	byMonth;
+	
+	// slots in 'groups', keyed by TemperatureKeyIndex.packKey with the year left at 0
+	private LongIntHashMap 				byCountryMonth;
+	private ArrayList<QuantileSketch> 	groups;
+	
+	
+	//
+	// constructor takes in the table, and sketches every row already in it
+	//
+	public TemperatureQuantiles(TemperatureTable table)
+	{
+		this.table 			= table;
+		this.sketchedRows 	= 0;
+		this.all 			= new QuantileSketch();
+		this.byCountry 		= new ArrayList<QuantileSketch>();
+		this.byMonth 		= new ArrayList<QuantileSketch>();
+		this.byCountryMonth = new LongIntHashMap();
+		this.groups 		= new ArrayList<QuantileSketch>();
+		
+		update();
+	}
+	
+	
+	//
+	// adds the rows appended to the table since the last update
+	//
+	public void update()
+	{
+		int rows = table.size();
+		
+		for ( int row = sketchedRows; row < rows; row++ )
+		{
+			double 	temperature = table.getTemperature(row);
+			int 	countryId 	= table.getCountryId(row);
+			int 	monthId 	= table.getMonthId(row);
+			
+			all.add(temperature);
+			getSketch(byCountry, countryId).add(temperature);
+			getSketch(byMonth, monthId).add(temperature);
+			getGroup( TemperatureKeyIndex.packKey(countryId, 0, monthId) ).add(temperature);
+		}
+		
+		sketchedRows = rows;
+	}
+	
+	
+	//
+	// every row's temperatures
+	//
+	public QuantileSketch getAll()
+	{
+		return all;
+	}
+	
+	
+	//
+	// the country's temperatures ( ignoring case ), or null if it has none
+	//
+	public QuantileSketch getByCountry(String country)
+	{
+		boolean[] 		matches = table.getCountryDictionary().matchIgnoreCase(country);
+		QuantileSketch 	found 	= null;
+		
+		for ( int id = 0; id < matches.length && id < byCountry.size(); id++ )
+		{
+			if ( matches[id] )
+			{
+				found = merge( found, byCountry.get(id) );
+			}
+		}
+		
+		return found;
+	}
+	
+	
+	//
+	// every country's temperatures in that month ( a month id, see TemperatureTable ), or null if there are none
+	//
+	public QuantileSketch getByMonth(int monthId)
+	{
+		return ( monthId >= 0 && monthId < byMonth.size() ) ? nullIfEmpty( byMonth.get(monthId) ) : null;
+	}
+	
+	
+	//
+	// the country's temperatures ( ignoring case ) in that month, every year, or null if there are none
+	//
+	public QuantileSketch getByCountryMonth(String country, int monthId)
+	{
+		boolean[] 		matches = table.getCountryDictionary().matchIgnoreCase(country);
+		QuantileSketch 	found 	= null;
+		
+		for ( int id = 0; id < matches.length; id++ )
+		{
+			int slot = matches[id] ? byCountryMonth.get( TemperatureKeyIndex.packKey(id, 0, monthId) ) : -1;
+			
+			if ( slot != -1 )
+			{
+				found = merge( found, groups.get(slot) );
+			}
+		}
+		
+		return found;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the sketch with that id, made ( along with any before it ) if it doesn't exist yet
+	//
+	private static QuantileSketch getSketch(ArrayList<QuantileSketch> sketches, int id)
+	{
+		while ( sketches.size() <= id )
+		{
+			sketches.add( new QuantileSketch() );
+		}
+		
+		return sketches.get(id);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the country + month sketch for the key, made if it doesn't exist yet
+	//
+	private QuantileSketch getGroup(long key)
+	{
+		int slot = byCountryMonth.get(key);
+		
+		if ( slot == -1 )
+		{
+			slot = groups.size();
+			
+			groups.add( new QuantileSketch() );
+			byCountryMonth.put(key, slot);
+		}
+		
+		return groups.get(slot);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the sketch found so far with another one added, the other one itself if it's the first
+	// ( a new sketch is only made when a country has more than one spelling )
+	//
+	private static QuantileSketch merge(QuantileSketch found, QuantileSketch sketch)
+	{
+		if ( sketch.getCount() == 0 )
+		{
+			return found;
+		}
+		
+		if ( found == null )
+		{
+			return sketch;
+		}
+		
+		QuantileSketch merged = new QuantileSketch();
+		
+		merged.merge(found);
+		merged.merge(sketch);
+		
+		return merged;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// null for a sketch with nothing in it ( i.e. a month made only for the ones after it )
+	//
+	private static QuantileSketch nullIfEmpty(QuantileSketch sketch)
+	{
+		return ( sketch.getCount() == 0 ) ? null : sketch;
+	}
+}
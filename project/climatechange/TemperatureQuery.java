@@ -0,0 +1,239 @@
+package climatechange;
+
+//
+// The predicates of a query on ClimateAnalyzer's data: country, month, year and temperature range,
+// each one left out matches anything ( i.e. new TemperatureQuery().month(1).range(-5, 5) )
+// plus a limit on how many rows getQueryRows returns
+//
+// ClimateAnalyzer runs every predicate and the last stage ( sorted rows, summary, or top K )
+// in one pass over the rows, see TemperatureQueryEngine
+//
+
+public class TemperatureQuery
+{
+	private String 	country;
+	private int 	month;
+	private boolean hasYear;
+	private int 	year;
+	private boolean hasRange;
+	private double 	rangeLowTemp;
+	private double 	rangeHighTemp;
+	private int 	limit;
+	
+	
+	//
+	// default constructor, a query that matches every row
+	//
+	public TemperatureQuery()
+	{
+		this.country 	= null;
+		this.month 		= 0;
+		this.hasYear 	= false;
+		this.hasRange 	= false;
+		this.limit 		= Integer.MAX_VALUE;
+	}
+	
+	
+	//
+	// only rows with this country ( compared ignoring case )
+	//
+	public TemperatureQuery country(String country)
+	{
+		this.country = country;
+		
+		return this;
+	}
+	
+	
+	//
+	// only rows with this month, 1(Jan) - 12(Dec)
+	//
+	public TemperatureQuery month(int month) throws IndexOutOfBoundsException
+	{
+		if ( month < 1 || month > 12)
+		{
+			throw new IndexOutOfBoundsException("Input for Month, '" + month +
+					"' is outside of the range 1-12, try again");
+		}
+		
+		this.month = month;
+		
+		return this;
+	}
+	
+	
+	//
+	// only rows with this year
+	//
+	public TemperatureQuery year(int year)
+	{
+		this.hasYear 	= true;
+		this.year 		= year;
+		
+		return this;
+	}
+	
+	
+	//
+	// only rows with a temperature in [rangeLowTemp, rangeHighTemp] ( Celsius )
+	//
+	public TemperatureQuery range(double rangeLowTemp, double rangeHighTemp)
+	{
+		this.hasRange 		= true;
+		this.rangeLowTemp 	= rangeLowTemp;
+		this.rangeHighTemp 	= rangeHighTemp;
+		
+		return this;
+	}
+	
+	
+	//
+	// at most this many rows are returned ( the lowest ones )
+	//
+	public TemperatureQuery limit(int limit) throws IllegalArgumentException
+	{
+		if ( limit < 0 )
+		{
+			throw new IllegalArgumentException("Input for limit, '" + limit + "', can't be negative, try again");
+		}
+		
+		this.limit = limit;
+		
+		return this;
+	}
+	
+	
+	// null if any country
+	public String getCountry()
+	{
+		return country;
+	}
+	
+	
+	// 0 if any month
+	public int getMonth()
+	{
+		return month;
+	}
+	
+	
+	public boolean hasYear()
+	{
+		return hasYear;
+	}
+	
+	
+	public int getYear()
+	{
+		return year;
+	}
+	
+	
+	public boolean hasRange()
+	{
+		return hasRange;
+	}
+	
+	
+	public double getRangeLowTemp()
+	{
+		return rangeLowTemp;
+	}
+	
+	
+	public double getRangeHighTemp()
+	{
+		return rangeHighTemp;
+	}
+	
+	
+	public int getLimit()
+	{
+		return limit;
+	}
+	
+	
+	//
+	// false only if no row in the partition can match every predicate
+	//
+	public boolean mayMatch(DataPartition p)
+	{
+		return 	( country == null 	|| p.mayContainCountry(country) ) &&
+				( month == 0 		|| p.mayContainMonth( ClimateAnalyzer.months[month % 12] ) ) &&
+				( ! hasYear 		|| p.mayContainYear(year) ) &&
+				( ! hasRange 		|| p.mayContainRange(rangeLowTemp, rangeHighTemp) );
+	}
+	
+	
+	//
+	// the predicates checked against a table's columns,
+	// the country and month are looked up in its dictionaries once, not for every row
+	//
+	public RowFilter getRowFilter(TemperatureTable table)
+	{
+		return new RowFilter(table);
+	}
+	
+	
+	//
+	// a TemperatureQuery's predicates, ready to check rows of one table
+	//
+	public class RowFilter
+	{
+		private TemperatureTable 	table;
+		private boolean[] 			countryMatches;
+		private int 				monthId;
+		
+		
+		private RowFilter(TemperatureTable table)
+		{
+			this.table 			= table;
+			this.countryMatches = ( country == null ) ? null : table.getCountryDictionary().matchIgnoreCase(country);
+			this.monthId 		= ( month == 0 ) ? -1 : table.getMonthDictionary().indexOf( ClimateAnalyzer.months[month % 12] );
+		}
+		
+		
+		//
+		// true if the row matches every predicate
+		// ( a row without a temperature is never in a range )
+		//
+		public boolean matches(int row)
+		{
+			if ( countryMatches != null && ! countryMatches[ table.getCountryId(row) ] )
+			{
+				return false;
+			}
+			
+			if ( month != 0 && table.getMonthId(row) != monthId )
+			{
+				return false;
+			}
+			
+			if ( hasYear && table.getYear(row) != year )
+			{
+				return false;
+			}
+			
+			if ( hasRange )
+			{
+				double temperature = table.getTemperature(row);
+				
+				return temperature >= rangeLowTemp && temperature <= rangeHighTemp;
+			}
+			
+			return true;
+		}
+		
+		
+		//
+		// false only if no row in the zone map's block can match every predicate
+		//
+		public boolean mayMatch(TemperatureZoneMap zoneMap, int block)
+		{
+			return 	( countryMatches == null 	|| zoneMap.mayContainCountry(block, countryMatches) ) &&
+					( month == 0 				|| zoneMap.mayContainMonth(block, monthId) ) &&
+					( ! hasYear 				|| zoneMap.mayContainYear(block, year) ) &&
+					( ! hasRange 				|| zoneMap.mayContainRange(block, rangeLowTemp, rangeHighTemp) );
+		}
+	}
+}
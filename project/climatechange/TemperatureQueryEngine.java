@@ -0,0 +1,623 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+//
+// Runs a TemperatureQuery against ClimateAnalyzer's data in one pass:
+// each row is checked against every predicate and goes straight into the last stage
+// ( collecting row ids to sort, a running summary, or TemperatureTopK ),
+// nothing is filtered into a collection first and filtered again
+//
+// the rows come from the narrowest source there is:
+// 		a country, year and month are looked up in the key index
+// 		some of them: their row sets in the bitmap index are ANDed, and only those rows are read
+// 		otherwise ( a range or nothing ) every partition that could match is scanned ( see TemperatureQuery.mayMatch ),
+// 		skipping the blocks of it the zone map rules out
+//
+// and a query an index already answers isn't run over rows at all:
+// 		a summary of a country ( by month or year ) comes from the aggregates
+// 		sorted rows in a range ( by country ) come from the sorted index
+// and any other rows are put in order by their positions in the sorted index
+//
+// with setParallelism, a top K or a range going over enough rows is split into parts of the data
+// run on a fork/join pool, each with its own TopK ( or list of rows ), and the parts are merged back in order,
+// so the result is the same as running it on one thread
+//
+// not thread safe, ClimateAnalyzer's queries are synchronized ( the parts only read the data and indexes )
+//
+
+public class TemperatureQueryEngine
+{
+	// fewer rows than this to go over and a query isn't worth splitting
+	public static final int DEFAULT_PARALLEL_THRESHOLD 	= 65536;
+	
+	// parts per thread, so a slow part doesn't hold up the rest
+	private static final int PARTS_PER_THREAD 			= 4;
+	
+	private TemperatureTable 			table;
+	private ArrayList<DataPartition> 	partitions;
+	private TemperatureKeyIndex 		keyIndex;
+	private TemperatureAggregates 		aggregates;
+	private TemperatureSortedIndex 		sortedIndex;
+	private TemperatureZoneMap 			zoneMap;
+	private TemperatureBitmapIndex 		bitmapIndex;
+	
+	// null runs every query on the calling thread
+	private ForkJoinPool 				pool;
+	private int 						parallelThreshold;
+	
+	
+	//
+	// constructor takes in the data, its partitions and its indexes
+	// they're kept as they are, so rows appended to them later are seen too
+	// queries run on the calling thread until setParallelism is called
+	//
+	public TemperatureQueryEngine(TemperatureTable table, ArrayList<DataPartition> partitions,
+			TemperatureKeyIndex keyIndex, TemperatureAggregates aggregates, TemperatureSortedIndex sortedIndex,
+			TemperatureZoneMap zoneMap, TemperatureBitmapIndex bitmapIndex)
+	{
+		this.table 			= table;
+		this.partitions 	= partitions;
+		this.keyIndex 		= keyIndex;
+		this.aggregates 	= aggregates;
+		this.sortedIndex 	= sortedIndex;
+		this.zoneMap 		= zoneMap;
+		this.bitmapIndex 	= bitmapIndex;
+		
+		this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	}
+	
+	
+	//
+	// runs a top K or a range that goes over at least 'threshold' rows on 'threads' threads,
+	// smaller ones on the calling thread ( 1 thread runs everything on the calling thread )
+	//
+	public void setParallelism(int threads, int threshold) throws IllegalArgumentException
+	{
+		if ( threads < 1 )
+		{
+			throw new IllegalArgumentException("Parallelism must be at least 1, was " + threads);
+		}
+		
+		if ( threshold < 0 )
+		{
+			throw new IllegalArgumentException("Parallel threshold can't be negative, was " + threshold);
+		}
+		
+		close();
+		
+		this.pool 				= ( threads > 1 ) ? new ForkJoinPool(threads) : null;
+		this.parallelThreshold 	= threshold;
+	}
+	
+	
+	//
+	// stops the threads, if there are any ( queries run on the calling thread after )
+	//
+	public void close()
+	{
+		if ( pool != null )
+		{
+			pool.shutdown();
+			pool = null;
+		}
+	}
+	
+	
+	//
+	// views of the matching rows sorted low to high, repeated readings only once,
+	// at most the query's limit
+	//
+	public ArrayList<ITemperature> getRows(TemperatureQuery query)
+	{
+		// the sorted index has the rows of a range already in order
+		if ( query.hasRange() && query.getMonth() == 0 && ! query.hasYear() )
+		{
+			ArrayList<ITemperature> rows = ( query.getCountry() == null )
+					? getRange( query.getRangeLowTemp(), query.getRangeHighTemp() )
+					: sortedIndex.getRange( query.getCountry(), query.getRangeLowTemp(), query.getRangeHighTemp() );
+			
+			if ( rows.size() > query.getLimit() )
+			{
+				rows = new ArrayList<ITemperature>( rows.subList(0, query.getLimit()) );
+			}
+			
+			return rows;
+		}
+		
+		RowCollector collector = new RowCollector();
+		
+		scan(query, collector);
+		
+		int[] 	found 	= collector.rows;
+		int 	count 	= collector.count;
+		
+		// in order by their positions in the sorted index, only rows without a temperature need comparing
+		if ( ! sortedIndex.sortRows(found, count) )
+		{
+			table.sortRows(found, 0, count);
+		}
+		
+		ArrayList<ITemperature> rows = new ArrayList<ITemperature>();
+		
+		for ( int i = 0; i < count && rows.size() < query.getLimit(); i++ )
+		{
+			// equal readings are next to each other
+			if ( i == 0 || table.compareRows( found[i - 1], found[i] ) != 0 )
+			{
+				rows.add( table.get( found[i] ) );
+			}
+		}
+		
+		return rows;
+	}
+	
+	
+	//
+	// summary of the matching rows, or null if there are none
+	//
+	public TemperatureSummary getSummary(TemperatureQuery query)
+	{
+		// a country, or a country in a month or a year, is already aggregated
+		if ( query.getCountry() != null && ! query.hasRange() )
+		{
+			if ( query.getMonth() == 0 && ! query.hasYear() )
+			{
+				return aggregates.getByCountry( query.getCountry() );
+			}
+			
+			if ( query.getMonth() != 0 && ! query.hasYear() )
+			{
+				int monthId = getMonthId(query);
+				
+				return ( monthId == -1 ) ? null : aggregates.getByMonth( query.getCountry(), monthId );
+			}
+			
+			if ( query.getMonth() == 0 && query.hasYear() )
+			{
+				return aggregates.getByYear( query.getCountry(), query.getYear() );
+			}
+		}
+		
+		RowSummary summary = new RowSummary();
+		
+		scan(query, summary);
+		
+		if ( summary.count == 0 )
+		{
+			return null;
+		}
+		
+		return new TemperatureSummary( table.get(summary.lowestRow), table.get(summary.highestRow),
+				summary.count, summary.sum );
+	}
+	
+	
+	//
+	// the lowest ( or highest ) matching row of each country, then the K lowest ( or highest ) of those,
+	// sorted low to high ( see TemperatureTopK ), empty if no row matches
+	//
+	public ArrayList<ITemperature> getTop(final TemperatureQuery query, final int k, final boolean highest)
+			throws IllegalArgumentException
+	{
+		TemperatureTopK top = new TemperatureTopK(k, highest, highest);
+		
+		if ( isKeyLookup(query) )
+		{
+			scan( query, getTopStage(top) );
+			
+			return top.getTop();
+		}
+		
+		final RowBitmap rowSet = getRowSet(query);
+		
+		if ( pool == null || getRowCount(query, rowSet) < parallelThreshold )
+		{
+			scan( query, rowSet, getTopStage(top), 0, table.size() );
+			
+			return top.getTop();
+		}
+		
+		// each part of the data keeps its own best rows, merged in order
+		ArrayList<ForkJoinTask<TemperatureTopK>> 	parts 	= new ArrayList<ForkJoinTask<TemperatureTopK>>();
+		int[] 										splits 	= getSplits(0, table.size(), zoneMap.getBlockSize());
+		
+		for ( int i = 0; i + 1 < splits.length; i++ )
+		{
+			final int from 	= splits[i];
+			final int to 	= splits[i + 1];
+			
+			parts.add( pool.submit( new Callable<TemperatureTopK>()
+			{
+				@Override
+				public TemperatureTopK call()
+				{
+					TemperatureTopK part = new TemperatureTopK(k, highest, highest);
+					
+					scan( query, rowSet, getTopStage(part), from, to );
+					
+					return part;
+				}
+			}));
+		}
+		
+		for ( ForkJoinTask<TemperatureTopK> part : parts )
+		{
+			top.addAll( part.join() );
+		}
+		
+		return top.getTop();
+	}
+	
+	
+	//
+	// (Helper Method)
+	// views of every row with a temperature in [low, high] from the sorted index, lowest first,
+	// repeated readings only once, a big range is split into parts that are made on the pool
+	//
+	private ArrayList<ITemperature> getRange(double low, double high)
+	{
+		int[] bounds = sortedIndex.getRangeBounds(low, high);
+		
+		if ( pool == null || bounds[1] - bounds[0] < parallelThreshold )
+		{
+			return sortedIndex.getRange(low, high);
+		}
+		
+		ArrayList<ForkJoinTask<ArrayList<ITemperature>>> 	parts 	= new ArrayList<ForkJoinTask<ArrayList<ITemperature>>>();
+		int[] 												splits 	= getSplits(bounds[0], bounds[1], 1);
+		
+		for ( int i = 0; i + 1 < splits.length; i++ )
+		{
+			final int from 	= splits[i];
+			final int to 	= splits[i + 1];
+			
+			parts.add( pool.submit( new Callable<ArrayList<ITemperature>>()
+			{
+				@Override
+				public ArrayList<ITemperature> call()
+				{
+					ArrayList<ITemperature> part = new ArrayList<ITemperature>();
+					
+					sortedIndex.addRows(part, from, to);
+					
+					return part;
+				}
+			}));
+		}
+		
+		ArrayList<ITemperature> range = new ArrayList<ITemperature>( bounds[1] - bounds[0] );
+		
+		for ( ForkJoinTask<ArrayList<ITemperature>> part : parts )
+		{
+			range.addAll( part.join() );
+		}
+		
+		return range;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// hands every row matching the query to the stage, from the narrowest source there is
+	//
+	private void scan(TemperatureQuery query, RowStage stage)
+	{
+		if ( ! isKeyLookup(query) )
+		{
+			scan( query, getRowSet(query), stage, 0, table.size() );
+			
+			return;
+		}
+		
+		TemperatureQuery.RowFilter 	filter 	= query.getRowFilter(table);
+		boolean[] 					matches = table.getCountryDictionary().matchIgnoreCase( query.getCountry() );
+		int 						monthId = getMonthId(query);
+		
+		for ( int id = 0; id < matches.length && monthId != -1; id++ )
+		{
+			if ( ! matches[id] )
+			{
+				continue;
+			}
+			
+			for ( int row = keyIndex.getFirstRow(id, query.getYear(), monthId); row != -1; row = keyIndex.getNextRow(row) )
+			{
+				// only the range is left to check
+				if ( filter.matches(row) )
+				{
+					stage.accept(row);
+				}
+			}
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// hands every row in [from, to) matching the query to the stage, the ones in the row set
+	// if there is one ( see getRowSet ), otherwise from every partition that could match
+	// ( see TemperatureQuery.mayMatch ), skipping the blocks of it the zone map rules out
+	//
+	private void scan(TemperatureQuery query, RowBitmap rowSet, RowStage stage, int from, int to)
+	{
+		TemperatureQuery.RowFilter filter = query.getRowFilter(table);
+		
+		if ( rowSet != null )
+		{
+			for ( PrimitiveIterator.OfInt i = rowSet.iterator(from); i.hasNext(); )
+			{
+				int row = i.nextInt();
+				
+				if ( row >= to )
+				{
+					break;
+				}
+				
+				// the range is still to be checked
+				if ( filter.matches(row) )
+				{
+					stage.accept(row);
+				}
+			}
+			
+			return;
+		}
+		
+		// a range is masked over each block's temperatures ( see scanBlock )
+		long[] mask = query.hasRange() ? new long[ (zoneMap.getBlockSize() + 63) >>> 6 ] : null;
+		
+		for ( DataPartition p : partitions )
+		{
+			if ( p.getEnd() <= from || p.getStart() >= to || ! query.mayMatch(p) )
+			{
+				continue;
+			}
+			
+			// the partition's rows a block at a time, a partition can start or end inside a block
+			for ( int start = Math.max( p.getStart(), from ); start < Math.min( p.getEnd(), to ); )
+			{
+				int block 	= zoneMap.getBlock(start);
+				int end 	= Math.min( Math.min( p.getEnd(), to ), (block + 1) * zoneMap.getBlockSize() );
+				
+				if ( filter.mayMatch(zoneMap, block) )
+				{
+					scanBlock(query, filter, stage, start, end, mask);
+				}
+				
+				start = end;
+			}
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// hands the rows in [start, end) of one block matching the query to the stage,
+	// with a range the block's temperatures are masked first ( see TemperatureKernels ), and only the rows in it are checked
+	//
+	private void scanBlock(TemperatureQuery query, TemperatureQuery.RowFilter filter, RowStage stage, 
+			int start, int end, long[] mask)
+	{
+		if ( mask == null )
+		{
+			for ( int row = start; row < end; row++ )
+			{
+				if ( filter.matches(row) )
+				{
+					stage.accept(row);
+				}
+			}
+			
+			return;
+		}
+		
+		if ( table.getRangeMask( start, end, query.getRangeLowTemp(), query.getRangeHighTemp(), mask ) == 0 )
+		{
+			return;
+		}
+		
+		for ( int word = 0; start + (word << 6) < end; word++ )
+		{
+			// each set bit, lowest first
+			for ( long bits = mask[word]; bits != 0; bits &= bits - 1 )
+			{
+				int row = start + (word << 6) + Long.numberOfTrailingZeros(bits);
+				
+				if ( filter.matches(row) )
+				{
+					stage.accept(row);
+				}
+			}
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// true if the query has a country, month and year, so its rows are looked up in the key index
+	//
+	private static boolean isKeyLookup(TemperatureQuery query)
+	{
+		return query.getCountry() != null && query.getMonth() != 0 && query.hasYear();
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the rows with the query's country, month and year ( the ones it has ), their sets in the bitmap index ANDed,
+	// or null if it has none of them
+	//
+	private RowBitmap getRowSet(TemperatureQuery query)
+	{
+		RowBitmap rows = null;
+		
+		if ( query.getCountry() != null )
+		{
+			rows = bitmapIndex.getCountry( table.getCountryDictionary().matchIgnoreCase( query.getCountry() ) );
+		}
+		
+		if ( query.getMonth() != 0 )
+		{
+			rows = and( rows, bitmapIndex.getMonth( getMonthId(query) ) );
+		}
+		
+		if ( query.hasYear() )
+		{
+			rows = and( rows, bitmapIndex.getYear( query.getYear() ) );
+		}
+		
+		return rows;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// about how many rows a scan goes over: the row set's, or every partition's that could match
+	//
+	private int getRowCount(TemperatureQuery query, RowBitmap rowSet)
+	{
+		if ( rowSet != null )
+		{
+			return rowSet.getCardinality();
+		}
+		
+		int rows = 0;
+		
+		for ( DataPartition p : partitions )
+		{
+			if ( query.mayMatch(p) )
+			{
+				rows += p.getEnd() - p.getStart();
+			}
+		}
+		
+		return rows;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// splits [from, to) into a few parts for each of the pool's threads, { from, ..., to },
+	// each part starting at a multiple of 'align' ( i.e. a zone map block )
+	//
+	private int[] getSplits(int from, int to, int align)
+	{
+		int parts 		= pool.getParallelism() * PARTS_PER_THREAD;
+		int partSize 	= (int) Math.max( align, ( (long) to - from + parts - 1 ) / parts );
+		
+		partSize = ( (partSize + align - 1) / align ) * align;
+		
+		int[] 	splits 	= new int[ ( to - from + partSize - 1 ) / partSize + 1 ];
+		
+		for ( int i = 0; i < splits.length; i++ )
+		{
+			splits[i] = (int) Math.min( to, from + (long) i * partSize );
+		}
+		
+		return splits;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the last stage of a top K query, adds each row to the TopK
+	//
+	private RowStage getTopStage(final TemperatureTopK top)
+	{
+		return new RowStage()
+		{
+			@Override
+			public void accept(int row)
+			{
+				top.addRow(table, row);
+			}
+		};
+	}
+	
+	
+	//
+	// (Helper Method)
+	// rows in both sets, or just b's if there's no a yet
+	//
+	private static RowBitmap and(RowBitmap a, RowBitmap b)
+	{
+		return ( a == null ) ? b : RowBitmap.and(a, b);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the query's month id in the table ( -1 if no row has that month )
+	//
+	private int getMonthId(TemperatureQuery query)
+	{
+		return table.getMonthDictionary().indexOf( ClimateAnalyzer.months[ query.getMonth() % 12 ] );
+	}
+	
+	
+	//
+	// the last stage of a query, takes the matching rows one at a time
+	//
+	private interface RowStage
+	{
+		public void accept(int row);
+	}
+	
+	
+	//
+	// collects the ids of the matching rows, to be sorted
+	//
+	private class RowCollector implements RowStage
+	{
+		private int[] 	rows 	= new int[16];
+		private int 	count 	= 0;
+		
+		
+		@Override
+		public void accept(int row)
+		{
+			if ( count == rows.length )
+			{
+				rows = Arrays.copyOf( rows, count + (count >> 1) );
+			}
+			
+			rows[count++] = row;
+		}
+	}
+	
+	
+	//
+	// running count, sum, lowest and highest row of the matching rows
+	//
+	private class RowSummary implements RowStage
+	{
+		private int 	count 		= 0;
+		private double 	sum 		= 0;
+		private int 	lowestRow 	= -1;
+		private int 	highestRow 	= -1;
+		
+		
+		@Override
+		public void accept(int row)
+		{
+			if ( count == 0 || table.compareRows(row, lowestRow) < 0 )
+			{
+				lowestRow = row;
+			}
+			
+			if ( count == 0 || table.compareRows(row, highestRow) > 0 )
+			{
+				highestRow = row;
+			}
+			
+			count++;
+			sum += table.getTemperature(row);
+		}
+	}
+}
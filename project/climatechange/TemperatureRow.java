@@ -0,0 +1,98 @@
+package climatechange;
+
+//
+// A view of one row of a TemperatureTable
+// holds only the table and the row number, every getter reads from the table's columns
+//
+// compares, equals and hashes the same as a Temperature with the same values,
+// so views and Temperatures can be mixed in the same sets
+//
+
+public class TemperatureRow implements ITemperature, Comparable<ITemperature>
+{
+	private TemperatureTable 	table;
+	private int 				row;
+	
+	
+	//
+	// constructor takes in the table and which row this is a view of
+	//
+	public TemperatureRow(TemperatureTable table, int row)
+	{
+		this.table 	= table;
+		this.row 	= row;
+	}
+	
+	
+	@Override
+	public String getCountry()
+	{
+		return table.getCountry(row);
+	}
+	
+	
+	@Override
+	public String getCountry3LetterCode()
+	{
+		return table.getCountry3LetterCode(row);
+	}
+	
+	
+	@Override
+	public String getMonth()
+	{
+		return table.getMonth(row);
+	}
+	
+	
+	@Override
+	public int getYear()
+	{
+		return table.getYear(row);
+	}
+	
+	
+	//
+	// stored in Celsius, converted to Fahrenheit the same way Temperature does
+	//
+	@Override
+	public double getTemperature(boolean getFahrenheit)
+	{
+		double temperature = table.getTemperature(row);
+		
+		if ( getFahrenheit )
+		{
+			return (temperature * (9.0/5.0)) + 32.0;
+		}
+		
+		return temperature;
+	}
+	
+	
+	@Override
+	public int compareTo(ITemperature that)
+	{
+		return Temperature.compare(this, that);
+	}
+	
+	
+	public boolean equals(Object x)
+	{
+		return ( x instanceof ITemperature ) && Temperature.compare( this, (ITemperature) x ) == 0;
+	}
+	
+	
+	public int hashCode()
+	{
+		return Temperature.hashCode(this);
+	}
+	
+	
+	//
+	// same output as Temperature.toString
+	//
+	public String toString()
+	{
+		return TemperatureFormatter.toRowString(this);
+	}
+}
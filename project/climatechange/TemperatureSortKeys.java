@@ -0,0 +1,213 @@
+package climatechange;
+
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+//
+// Sorts row ids of a TemperatureTable into compareRows order as plain longs:
+// each row's temperature, country, year, month and code are turned into where they come
+// among the values there are ( the distinct temperatures sorted once, the dictionaries' ranks ),
+// packed into one long with the row id in the lowest bits, and the longs sorted with Arrays.parallelSort
+//
+// so no two rows are compared field by field ( or String by String ), and a large sort runs on every core
+// equal readings pack to the same key above the row id, so they come out by row id, like a stable sort
+//
+// if it all doesn't fit in 63 bits, the rows are sorted by temperature and row id first,
+// then each run of equal temperatures by the rest of its key ( they're short, the temperature nearly always decides )
+// a row without a temperature has no place in the order, sort() leaves the rows alone and returns false for those
+//
+
+public class TemperatureSortKeys
+{
+	// the top bit is always 0, so the keys sort as signed longs
+	private static final int KEY_BITS = 63;
+	
+	private TemperatureTable 	table;
+	
+	private double[] 			distinctTemperatures;
+	private int 				distinctCount;
+	private int[] 				countryRanks;
+	private int[] 				monthRanks;
+	private int[] 				codeRanks;
+	private int 				minYear;
+	
+	private int 				countryBits;
+	private int 				yearBits;
+	private int 				monthBits;
+	private int 				codeBits;
+	
+	
+	//
+	// (Helper Method)
+	// constructor takes in the table and the rows' temperatures and years, and works out the ranks and widths
+	//
+	private TemperatureSortKeys(TemperatureTable table, double[] temperatures, int minYear, int maxYear)
+	{
+		this.table 					= table;
+		this.distinctTemperatures 	= temperatures.clone();
+		this.distinctCount 			= 0;
+		this.countryRanks 			= table.getCountryDictionary().getSortedRanks();
+		this.monthRanks 			= table.getMonthDictionary().getSortedRanks();
+		this.codeRanks 				= table.getCodeDictionary().getSortedRanks();
+		this.minYear 				= minYear;
+		
+		Arrays.parallelSort(distinctTemperatures);
+		
+		for ( int i = 0; i < distinctTemperatures.length; i++ )
+		{
+			if ( i == 0 || distinctTemperatures[i] != distinctTemperatures[i - 1] )
+			{
+				distinctTemperatures[distinctCount++] = distinctTemperatures[i];
+			}
+		}
+		
+		this.countryBits 	= getBits(countryRanks.length - 1);
+		this.yearBits 		= getBits( (long) maxYear - minYear );
+		this.monthBits 		= getBits(monthRanks.length - 1);
+		this.codeBits 		= getBits(codeRanks.length - 1);
+	}
+	
+	
+	//
+	// sorts the row ids in rows[from, to) into compareRows order,
+	// false ( and nothing done ) if they can't be packed into keys
+	//
+	public static boolean sort(TemperatureTable table, final int[] rows, final int from, int to)
+	{
+		int count = to - from;
+		
+		if ( count < 2 )
+		{
+			return true;
+		}
+		
+		final double[] 	temperatures 	= new double[count];
+		int 			minYear 		= Integer.MAX_VALUE;
+		int 			maxYear 		= Integer.MIN_VALUE;
+		
+		for ( int i = 0; i < count; i++ )
+		{
+			int 	row 		= rows[from + i];
+			double 	temperature = table.getTemperature(row);
+			
+			if ( Double.isNaN(temperature) )
+			{
+				return false;
+			}
+			
+			// -0.0 and 0.0 are equal to compareRows, but not to Arrays.sort
+			temperatures[i] = ( temperature == 0 ) ? 0.0 : temperature;
+			
+			minYear = Math.min( minYear, table.getYear(row) );
+			maxYear = Math.max( maxYear, table.getYear(row) );
+		}
+		
+		final TemperatureSortKeys 	keys 		= new TemperatureSortKeys(table, temperatures, minYear, maxYear);
+		final int 					rowBits 	= getBits(table.size() - 1);
+		final int 					tieBits 	= keys.countryBits + keys.yearBits + keys.monthBits + keys.codeBits;
+		final boolean 				packsWhole 	= getBits(keys.distinctCount - 1) + tieBits + rowBits <= KEY_BITS;
+		long[] 						packed 		= new long[count];
+		
+		if ( tieBits + rowBits > KEY_BITS )
+		{
+			return false;
+		}
+		
+		Arrays.parallelSetAll(packed, new IntToLongFunction()
+		{
+			@Override
+			public long applyAsLong(int i)
+			{
+				int 	row = rows[from + i];
+				long 	key = keys.getTemperatureRank( temperatures[i] );
+				
+				if ( packsWhole )
+				{
+					key = ( key << tieBits ) | keys.getTieKey(row);
+				}
+				
+				return ( key << rowBits ) | row;
+			}
+		});
+		
+		Arrays.parallelSort(packed);
+		
+		long rowMask = ( 1L << rowBits ) - 1;
+		
+		for ( int i = 0; i < count; i++ )
+		{
+			rows[from + i] = (int) ( packed[i] & rowMask );
+		}
+		
+		if ( packsWhole )
+		{
+			return true;
+		}
+		
+		// only the temperature was packed, each run of one temperature is sorted by the rest
+		for ( int start = 0; start < count; )
+		{
+			int end = start + 1;
+			
+			while ( end < count && ( packed[end] >>> rowBits ) == ( packed[start] >>> rowBits ) )
+			{
+				end++;
+			}
+			
+			if ( end - start > 1 )
+			{
+				for ( int i = start; i < end; i++ )
+				{
+					packed[i] = ( keys.getTieKey( rows[from + i] ) << rowBits ) | rows[from + i];
+				}
+				
+				Arrays.sort(packed, start, end);
+				
+				for ( int i = start; i < end; i++ )
+				{
+					rows[from + i] = (int) ( packed[i] & rowMask );
+				}
+			}
+			
+			start = end;
+		}
+		
+		return true;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// where the temperature comes among the distinct ones
+	//
+	private long getTemperatureRank(double temperature)
+	{
+		return Arrays.binarySearch(distinctTemperatures, 0, distinctCount, temperature);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// the row's country, year, month and code ranks packed, in compareRows order
+	//
+	private long getTieKey(int row)
+	{
+		long key = countryRanks[ table.getCountryId(row) ];
+		
+		key = ( key << yearBits ) 	| ( table.getYear(row) - (long) minYear );
+		key = ( key << monthBits ) 	| monthRanks[ table.getMonthId(row) ];
+		key = ( key << codeBits ) 	| codeRanks[ table.getCodeId(row) ];
+		
+		return key;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// how many bits it takes to hold every value from 0 to max
+	//
+	private static int getBits(long max)
+	{
+		return 64 - Long.numberOfLeadingZeros(max);
+	}
+}
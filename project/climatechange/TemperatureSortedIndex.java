@@ -0,0 +1,376 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+//
+// Row ids of a TemperatureTable sorted in the compareTo order ( lowest temperature first ),
+// for every row and for each country's rows
+//
+// since the order starts with the temperature, the rows in a temperature range are one
+// contiguous run: two binary searches find it, and it's already in the order the queries return,
+// so a range query costs about as much as its result, not the whole data set
+//
+// it's also the canonical order of the data: each row's position in it is kept,
+// so any set of rows ( i.e. a query's matches ) is put in order by sorting their positions as plain ints,
+// or by walking the order and picking them out, never by comparing rows
+//
+// rows without a temperature ( NaN ) are never in a range and are left out
+// update() sorts only the appended rows ( see TemperatureSortKeys ) and merges them in
+// not thread safe
+//
+
+public class TemperatureSortedIndex
+{
+	private TemperatureTable 	table;
+	private int 				indexedRows;
+	
+	private int[] 				sortedRows;
+	
+	// by row id, where it is in sortedRows ( -1 if it has no temperature )
+	private int[] 				positions;
+	
+	// by country id, each one's rows in the same order
+	private ArrayList<int[]> 	countryRows;
+	
+	
+	//
+	// constructor takes in the table, and sorts every row already in it
+	//
+	public TemperatureSortedIndex(TemperatureTable table)
+	{
+		this.table 			= table;
+		this.indexedRows 	= 0;
+		this.sortedRows 	= new int[0];
+		this.positions 		= new int[0];
+		this.countryRows 	= new ArrayList<int[]>();
+		
+		update();
+	}
+	
+	
+	//
+	// sorts the rows appended since the last update and merges them into the index
+	//
+	public void update()
+	{
+		int rows = table.size();
+		
+		if ( rows == indexedRows )
+		{
+			return;
+		}
+		
+		int[] 	newRows 	= new int[rows - indexedRows];
+		int 	newCount 	= 0;
+		
+		for ( int row = indexedRows; row < rows; row++ )
+		{
+			if ( ! Double.isNaN( table.getTemperature(row) ) )
+			{
+				newRows[newCount++] = row;
+			}
+		}
+		
+		table.sortRows(newRows, 0, newCount);
+		
+		sortedRows = merge(sortedRows, newRows, newCount);
+		positions 	= Arrays.copyOf(positions, rows);
+		
+		Arrays.fill(positions, indexedRows, rows, -1);
+		
+		// merging moves the old rows too
+		for ( int i = 0; i < sortedRows.length; i++ )
+		{
+			positions[ sortedRows[i] ] = i;
+		}
+		
+		// splits the sorted new rows by country, each country's part stays in order
+		int countries = table.getCountryDictionary().size();
+		
+		while ( countryRows.size() < countries )
+		{
+			countryRows.add( new int[0] );
+		}
+		
+		int[] newCounts = new int[countries];
+		
+		for ( int i = 0; i < newCount; i++ )
+		{
+			newCounts[ table.getCountryId( newRows[i] ) ]++;
+		}
+		
+		int[][] newCountryRows = new int[countries][];
+		
+		for ( int id = 0; id < countries; id++ )
+		{
+			newCountryRows[id] 	= new int[ newCounts[id] ];
+			newCounts[id] 		= 0;
+		}
+		
+		for ( int i = 0; i < newCount; i++ )
+		{
+			int id = table.getCountryId( newRows[i] );
+			
+			newCountryRows[id][ newCounts[id]++ ] = newRows[i];
+		}
+		
+		for ( int id = 0; id < countries; id++ )
+		{
+			if ( newCounts[id] > 0 )
+			{
+				countryRows.set( id, merge( countryRows.get(id), newCountryRows[id], newCounts[id] ) );
+			}
+		}
+		
+		indexedRows = rows;
+	}
+	
+	
+	//
+	// views of every row with a temperature in [low, high] ( Celsius ), lowest first,
+	// with repeated readings left out ( the same as a TreeSet of them )
+	//
+	public ArrayList<ITemperature> getRange(double low, double high)
+	{
+		ArrayList<ITemperature> range 	= new ArrayList<ITemperature>();
+		int[] 					bounds 	= getRangeBounds(low, high);
+		
+		addRows( range, bounds[0], bounds[1] );
+		
+		return range;
+	}
+	
+	
+	//
+	// where the rows with a temperature in [low, high] ( Celsius ) are in the index's order, { start, end }
+	// ( start == end if there are none, i.e. low is above high, or either one is NaN )
+	//
+	public int[] getRangeBounds(double low, double high)
+	{
+		if ( isEmptyRange(low, high) )
+		{
+			return new int[] { 0, 0 };
+		}
+		
+		int start = lowerBound(sortedRows, low);
+		
+		return new int[] { start, Math.max( start, upperBound(sortedRows, high) ) };
+	}
+	
+	
+	//
+	// adds views of the rows at [from, to) in the index's order, with repeated readings left out
+	// ( a part of a range can be added on its own, the row before it is looked at either way )
+	//
+	public void addRows(ArrayList<ITemperature> rows, int from, int to)
+	{
+		for ( int i = from; i < to; i++ )
+		{
+			// equal readings are next to each other, and a row just outside a range never equals one in it
+			if ( i == 0 || table.compareRows( sortedRows[i - 1], sortedRows[i] ) != 0 )
+			{
+				rows.add( table.get( sortedRows[i] ) );
+			}
+		}
+	}
+	
+	
+	//
+	// views of the country's rows ( ignoring case ) with a temperature in [low, high], lowest first,
+	// with repeated readings left out
+	//
+	public ArrayList<ITemperature> getRange(String country, double low, double high)
+	{
+		boolean[] 	matches = table.getCountryDictionary().matchIgnoreCase(country);
+		int[] 		found 	= new int[0];
+		int 		count 	= 0;
+		int 		runs 	= 0;
+		
+		for ( int id = 0; id < matches.length && id < countryRows.size() && ! isEmptyRange(low, high); id++ )
+		{
+			if ( matches[id] )
+			{
+				int[] 	rows 	= countryRows.get(id);
+				int 	start 	= lowerBound(rows, low);
+				int 	end 	= upperBound(rows, high);
+				
+				// none in the range
+				if ( end <= start )
+				{
+					continue;
+				}
+				
+				found = Arrays.copyOf( found, count + end - start );
+				
+				System.arraycopy(rows, start, found, count, end - start);
+				
+				count += end - start;
+				runs++;
+			}
+		}
+		
+		// the country is spelled more than one way in the data, its runs have to be put in order
+		if ( runs > 1 )
+		{
+			sortRows(found, count);
+		}
+		
+		ArrayList<ITemperature> range = new ArrayList<ITemperature>();
+		
+		for ( int i = 0; i < count; i++ )
+		{
+			// equal readings are next to each other
+			if ( i == 0 || table.compareRows( found[i - 1], found[i] ) != 0 )
+			{
+				range.add( table.get( found[i] ) );
+			}
+		}
+		
+		return range;
+	}
+	
+	
+	//
+	// sorts the first 'count' row ids into the index's order ( compareTo, ties by row id ),
+	// false ( and nothing done ) if one of them isn't in the index, i.e. has no temperature
+	// a row id can only be in there once
+	//
+	public boolean sortRows(int[] rows, int count)
+	{
+		int[] found = new int[count];
+		
+		for ( int i = 0; i < count; i++ )
+		{
+			found[i] = ( rows[i] < positions.length ) ? positions[ rows[i] ] : -1;
+			
+			if ( found[i] == -1 )
+			{
+				return false;
+			}
+		}
+		
+		// a big share of the rows is picked out of the order in one walk, fewer are sorted by position
+		if ( count > sortedRows.length / 8 )
+		{
+			boolean[] 	picked 	= new boolean[ sortedRows.length ];
+			int 		k 		= 0;
+			
+			for ( int i = 0; i < count; i++ )
+			{
+				picked[ found[i] ] = true;
+			}
+			
+			for ( int i = 0; i < sortedRows.length; i++ )
+			{
+				if ( picked[i] )
+				{
+					rows[k++] = sortedRows[i];
+				}
+			}
+		}
+		else
+		{
+			Arrays.sort(found);
+			
+			for ( int i = 0; i < count; i++ )
+			{
+				rows[i] = sortedRows[ found[i] ];
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// index of the first row with a temperature >= low
+	//
+	private int lowerBound(int[] rows, double low)
+	{
+		int from 	= 0;
+		int to 		= rows.length;
+		
+		while ( from < to )
+		{
+			int mid = (from + to) >>> 1;
+			
+			if ( table.getTemperature( rows[mid] ) >= low )
+			{
+				to = mid;
+			}
+			else
+			{
+				from = mid + 1;
+			}
+		}
+		
+		return from;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// true if no temperature can be in [low, high], low is above high or either one is NaN
+	// ( the bounds' searches would cross, or NaN would take in every row )
+	//
+	private static boolean isEmptyRange(double low, double high)
+	{
+		return ! ( low <= high );
+	}
+	
+	
+	//
+	// (Helper Method)
+	// index of the first row with a temperature > high
+	//
+	private int upperBound(int[] rows, double high)
+	{
+		int from 	= 0;
+		int to 		= rows.length;
+		
+		while ( from < to )
+		{
+			int mid = (from + to) >>> 1;
+			
+			if ( table.getTemperature( rows[mid] ) > high )
+			{
+				to = mid;
+			}
+			else
+			{
+				from = mid + 1;
+			}
+		}
+		
+		return from;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// merges sorted row ids with the first bCount of b ( also sorted ) into a new array
+	// ties keep the old row first
+	//
+	private int[] merge(int[] a, int[] b, int bCount)
+	{
+		int[] 	merged 	= new int[a.length + bCount];
+		int 	i 		= 0;
+		int 	j 		= 0;
+		
+		for ( int k = 0; k < merged.length; k++ )
+		{
+			if ( i < a.length && ( j >= bCount || table.compareRows(a[i], b[j]) <= 0 ) )
+			{
+				merged[k] = a[i++];
+			}
+			else
+			{
+				merged[k] = b[j++];
+			}
+		}
+		
+		return merged;
+	}
+}
@@ -0,0 +1,80 @@
+package climatechange;
+
+//
+// Summary of a group of temperature readings ( i.e. one country's, or one country's in a given year ):
+// the lowest and highest readings, how many there are, and their sum and mean
+//
+// the lowest and highest are by the compareTo order, the same readings A-1, A-2 and A-4 return
+// sum and mean are in Celsius
+//
+
+public class TemperatureSummary
+{
+	private ITemperature 	lowest;
+	private ITemperature 	highest;
+	private int 			count;
+	private double 			sum;
+	
+	
+	//
+	// constructor that takes in the lowest and highest readings, the number of readings and their sum
+	//
+	public TemperatureSummary(ITemperature lowest, ITemperature highest, int count, double sum)
+	{
+		this.lowest 	= lowest;
+		this.highest 	= highest;
+		this.count 		= count;
+		this.sum 		= sum;
+	}
+	
+	
+	public ITemperature getLowest()
+	{
+		return lowest;
+	}
+	
+	
+	public ITemperature getHighest()
+	{
+		return highest;
+	}
+	
+	
+	// every reading is counted, a repeated reading included
+	public int getCount()
+	{
+		return count;
+	}
+	
+	
+	public double getSum()
+	{
+		return sum;
+	}
+	
+	
+	//
+	// mean temperature, in Fahrenheit if getFahrenheit is true, else in Celsius
+	//
+	public double getMean(boolean getFahrenheit)
+	{
+		double mean = sum / count;
+		
+		if ( getFahrenheit )
+		{
+			return (mean * (9.0/5.0)) + 32.0;
+		}
+		
+		return mean;
+	}
+	
+	
+	//
+	// i.e. Count: 17, Mean: 21.34(C) 70.42(F)
+	//
+	public String toString()
+	{
+		return "Count: " + count + ", Mean: " + String.format("%.2f", getMean(false)) + "(C) "
+				+ String.format("%.2f", getMean(true)) + "(F)";
+	}
+}
@@ -0,0 +1,578 @@
+package climatechange;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+//
+// Weather data stored by column instead of one Temperature object per row:
+// temperatures, years, months, countries and codes each live in their own array
+//
+// countries and codes are stored as ids into a StringDictionary, months as their index
+// in ClimateAnalyzer.months ( one byte ), so a country or month filter compares ints
+// tables made with newTable() share their dictionaries, rows copy between them as is,
+// rows from any other table have their ids translated as they are copied
+//
+// get(i) hands out a small view of row i ( see TemperatureRow ) that reads from the arrays,
+// so the table can be used anywhere a List<ITemperature> is expected
+// views are made when asked for and aren't kept, the table only holds the arrays
+//
+// rows can only be appended, a view stays valid for as long as the table is around
+// not thread safe, appends have to be kept apart from reads by the caller
+//
+
+public class TemperatureTable extends AbstractList<ITemperature> implements RandomAccess, IRowSink
+{
+	private static final int DEFAULT_CAPACITY 	= 1024;
+	
+	// month ids have to fit in a byte
+	private static final int MAX_MONTHS 		= 256;
+	
+	private double[] 			temperatures;
+	private int[] 				years;
+	private byte[] 				monthIds;
+	private int[] 				countryIds;
+	private int[] 				codeIds;
+	private int 				size;
+	
+	private StringDictionary 	monthDictionary;
+	private StringDictionary 	countryDictionary;
+	private StringDictionary 	codeDictionary;
+	
+	
+	//
+	// default constructor, an empty table
+	//
+	public TemperatureTable()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+	
+	
+	//
+	// constructor takes in how many rows to make room for up front
+	//
+	public TemperatureTable(int capacity)
+	{
+		this( capacity, new StringDictionary(ClimateAnalyzer.months), new StringDictionary(), new StringDictionary() );
+	}
+	
+	
+	//
+	// (Helper Method)
+	// constructor for a table using the given dictionaries
+	//
+	private TemperatureTable(int capacity, StringDictionary monthDictionary, 
+			StringDictionary countryDictionary, StringDictionary codeDictionary)
+	{
+		capacity = Math.max(capacity, 1);
+		
+		this.temperatures 		= new double[capacity];
+		this.years 				= new int[capacity];
+		this.monthIds 			= new byte[capacity];
+		this.countryIds 		= new int[capacity];
+		this.codeIds 			= new int[capacity];
+		this.size 				= 0;
+		this.monthDictionary 	= monthDictionary;
+		this.countryDictionary 	= countryDictionary;
+		this.codeDictionary 	= codeDictionary;
+	}
+	
+	
+	//
+	// an empty table sharing this table's dictionaries, for holding a selection of its rows
+	// only one of the tables should be added to at a time ( the dictionaries aren't thread safe )
+	//
+	public TemperatureTable newTable()
+	{
+		return new TemperatureTable(DEFAULT_CAPACITY, monthDictionary, countryDictionary, codeDictionary);
+	}
+	
+	
+	//
+	// appends a row made from the parsed values ( temperature in Celsius )
+	//
+	@Override
+	public void acceptRow(double temperature, int year, String month, String country, String code)
+	{
+		ensureCapacity(size + 1);
+		
+		temperatures[size] 	= temperature;
+		years[size] 		= year;
+		monthIds[size] 		= toMonthId( monthDictionary.add(month) );
+		countryIds[size] 	= countryDictionary.add(country);
+		codeIds[size] 		= codeDictionary.add(code);
+		
+		size++;
+	}
+	
+	
+	//
+	// appends a copy of the row's values, the table never keeps t itself
+	//
+	@Override
+	public boolean add(ITemperature t)
+	{
+		acceptRow( t.getTemperature(false), t.getYear(), t.getMonth(), t.getCountry(), t.getCountry3LetterCode() );
+		
+		return true;
+	}
+	
+	
+	//
+	// appends every row, another table is copied column by column
+	//
+	@Override
+	public boolean addAll(Collection<? extends ITemperature> rows)
+	{
+		if ( rows instanceof TemperatureTable )
+		{
+			TemperatureTable that = (TemperatureTable) rows;
+			
+			addRange(that, 0, that.size);
+			
+			return that.size > 0;
+		}
+		
+		ensureCapacity( size + rows.size() );
+		
+		return super.addAll(rows);
+	}
+	
+	
+	//
+	// appends rows [start, end) of another table
+	//
+	public void addRange(TemperatureTable from, int start, int end)
+	{
+		if ( start < 0 || end > from.size || start > end )
+		{
+			throw new IndexOutOfBoundsException("Rows " + start + " to " + end + " of " + from.size);
+		}
+		
+		int count = end - start;
+		
+		ensureCapacity(size + count);
+		
+		System.arraycopy(from.temperatures, start, temperatures, size, count);
+		System.arraycopy(from.years, 		start, years, 			size, count);
+		
+		if ( from.monthDictionary == monthDictionary && from.countryDictionary == countryDictionary 
+				&& from.codeDictionary == codeDictionary )
+		{
+			System.arraycopy(from.monthIds, 	start, monthIds, 	size, count);
+			System.arraycopy(from.countryIds, 	start, countryIds, 	size, count);
+			System.arraycopy(from.codeIds, 		start, codeIds, 	size, count);
+		}
+		else
+		{
+			// ids only have to be translated once per dictionary entry, not once per row
+			int[] months 	= translate(from.monthDictionary, monthDictionary);
+			int[] countries = translate(from.countryDictionary, countryDictionary);
+			int[] codes 	= translate(from.codeDictionary, codeDictionary);
+			
+			for ( int i = 0; i < count; i++ )
+			{
+				monthIds[size + i] 		= toMonthId( months[ from.monthIds[start + i] & 0xFF ] );
+				countryIds[size + i] 	= countries[ from.countryIds[start + i] ];
+				codeIds[size + i] 		= codes[ from.codeIds[start + i] ];
+			}
+		}
+		
+		size += count;
+	}
+	
+	
+	//
+	// appends rows given column by column, with months, countries and codes as ids into the given values
+	// ( i.e. a snapshot's dictionaries ), each value goes into the table's dictionaries once, not once per row
+	//
+	// the arrays are handed over: the id columns are changed to the table's ids in place,
+	// and an empty table keeps the arrays as its own columns instead of copying them
+	// every column has to be the same length
+	//
+	public void addColumns(double[] temperatures, int[] years, String[] months, byte[] monthIds, 
+			String[] countries, int[] countryIds, String[] codes, int[] codeIds)
+	{
+		int count = temperatures.length;
+		
+		if ( years.length != count || monthIds.length != count || countryIds.length != count || codeIds.length != count )
+		{
+			throw new IllegalArgumentException("Columns of " + count + " rows have to be the same length");
+		}
+		
+		int[] monthMap 		= translate(months, monthDictionary);
+		int[] countryMap 	= translate(countries, countryDictionary);
+		int[] codeMap 		= translate(codes, codeDictionary);
+		
+		for ( int i = 0; i < count; i++ )
+		{
+			monthIds[i] 	= toMonthId( monthMap[ monthIds[i] & 0xFF ] );
+			countryIds[i] 	= countryMap[ countryIds[i] ];
+			codeIds[i] 		= codeMap[ codeIds[i] ];
+		}
+		
+		if ( size == 0 && count > 0 )
+		{
+			this.temperatures 	= temperatures;
+			this.years 			= years;
+			this.monthIds 		= monthIds;
+			this.countryIds 	= countryIds;
+			this.codeIds 		= codeIds;
+			this.size 			= count;
+			
+			return;
+		}
+		
+		ensureCapacity(size + count);
+		
+		System.arraycopy(temperatures, 	0, this.temperatures, 	size, count);
+		System.arraycopy(years, 		0, this.years, 			size, count);
+		System.arraycopy(monthIds, 		0, this.monthIds, 		size, count);
+		System.arraycopy(countryIds, 	0, this.countryIds, 	size, count);
+		System.arraycopy(codeIds, 		0, this.codeIds, 		size, count);
+		
+		size += count;
+	}
+	
+	
+	//
+	// view of row i
+	//
+	@Override
+	public ITemperature get(int i)
+	{
+		checkIndex(i);
+		
+		return new TemperatureRow(this, i);
+	}
+	
+	
+	@Override
+	public int size()
+	{
+		return size;
+	}
+	
+	
+	//
+	// getters for a single value of row i, without making a view
+	//
+	public double getTemperature(int i)
+	{
+		checkIndex(i);
+		return temperatures[i];
+	}
+	
+	
+	public int getYear(int i)
+	{
+		checkIndex(i);
+		return years[i];
+	}
+	
+	
+	//
+	// scans of the temperature column for rows [from, to), straight over the array ( see TemperatureKernels )
+	// a mask bit per row in [low, high] ( returns how many ), and the lowest and highest temperature
+	//
+	public int getRangeMask(int from, int to, double low, double high, long[] mask)
+	{
+		checkRange(from, to);
+		return TemperatureKernels.getRangeMask(temperatures, from, to, low, high, mask);
+	}
+	
+	
+	public double getMinTemperature(int from, int to)
+	{
+		checkRange(from, to);
+		return TemperatureKernels.getMin(temperatures, from, to);
+	}
+	
+	
+	public double getMaxTemperature(int from, int to)
+	{
+		checkRange(from, to);
+		return TemperatureKernels.getMax(temperatures, from, to);
+	}
+	
+	
+	//
+	// copies the temperatures of rows [from, to) to out from outFrom on, in Fahrenheit if getFahrenheit is true
+	// ( the same values getTemperature(true) of each row's view returns )
+	//
+	public void getTemperatures(int from, int to, boolean getFahrenheit, double[] out, int outFrom)
+	{
+		checkRange(from, to);
+		
+		if ( getFahrenheit )
+		{
+			TemperatureKernels.toFahrenheit(temperatures, from, to, out, outFrom);
+		}
+		else
+		{
+			System.arraycopy(temperatures, from, out, outFrom, to - from);
+		}
+	}
+	
+	
+	public String getMonth(int i)
+	{
+		return monthDictionary.get( getMonthId(i) );
+	}
+	
+	
+	public String getCountry(int i)
+	{
+		return countryDictionary.get( getCountryId(i) );
+	}
+	
+	
+	public String getCountry3LetterCode(int i)
+	{
+		return codeDictionary.get( getCodeId(i) );
+	}
+	
+	
+	//
+	// ids of row i's values in the dictionaries below
+	// a month id is its index in ClimateAnalyzer.months
+	//
+	public int getMonthId(int i)
+	{
+		checkIndex(i);
+		return monthIds[i] & 0xFF;
+	}
+	
+	
+	public int getCountryId(int i)
+	{
+		checkIndex(i);
+		return countryIds[i];
+	}
+	
+	
+	public int getCodeId(int i)
+	{
+		checkIndex(i);
+		return codeIds[i];
+	}
+	
+	
+	//
+	// compares rows i and j in the same order as Temperature.compare, without making views
+	//
+	public int compareRows(int i, int j)
+	{
+		int temperatureDiff = (int) Math.signum( getTemperature(i) - getTemperature(j) );
+		
+		if ( temperatureDiff != 0 )
+		{
+			return temperatureDiff;
+		}
+		
+		int countryDiff = getCountry(i).compareTo( getCountry(j) );
+		
+		if ( countryDiff != 0 )
+		{
+			return countryDiff;
+		}
+		
+		int yearDiff = (int) Math.signum( getYear(i) - getYear(j) );
+		
+		if ( yearDiff != 0 )
+		{
+			return yearDiff;
+		}
+		
+		int monthDiff = getMonth(i).compareTo( getMonth(j) );
+		
+		if ( monthDiff != 0 )
+		{
+			return monthDiff;
+		}
+		
+		return getCountry3LetterCode(i).compareTo( getCountry3LetterCode(j) );
+	}
+	
+	
+	//
+	// sorts the row ids in rows[from, to) into compareRows order
+	// as packed keys if they fit ( see TemperatureSortKeys ), otherwise with a stable merge sort
+	//
+	public void sortRows(int[] rows, int from, int to)
+	{
+		if ( TemperatureSortKeys.sort(this, rows, from, to) )
+		{
+			return;
+		}
+		
+		int[] 	buffer 	= new int[to - from];
+		int[] 	src 	= Arrays.copyOfRange(rows, from, to);
+		int 	count 	= src.length;
+		
+		// merges runs of width 1, 2, 4, ... back and forth between src and buffer
+		for ( int width = 1; width < count; width *= 2 )
+		{
+			for ( int left = 0; left < count; left += 2 * width )
+			{
+				int mid 	= Math.min(left + width, count);
+				int right 	= Math.min(left + 2 * width, count);
+				int i 		= left;
+				int j 		= mid;
+				
+				for ( int k = left; k < right; k++ )
+				{
+					if ( i < mid && ( j >= right || compareRows(src[i], src[j]) <= 0 ) )
+					{
+						buffer[k] = src[i++];
+					}
+					else
+					{
+						buffer[k] = src[j++];
+					}
+				}
+			}
+			
+			int[] swap 	= src;
+			src 		= buffer;
+			buffer 		= swap;
+		}
+		
+		System.arraycopy(src, 0, rows, from, count);
+	}
+	
+	
+	public StringDictionary getMonthDictionary()
+	{
+		return monthDictionary;
+	}
+	
+	
+	public StringDictionary getCountryDictionary()
+	{
+		return countryDictionary;
+	}
+	
+	
+	public StringDictionary getCodeDictionary()
+	{
+		return codeDictionary;
+	}
+	
+	
+	//
+	// makes room for at least 'capacity' rows, growing by half again each time
+	//
+	public void ensureCapacity(int capacity)
+	{
+		if ( capacity <= temperatures.length )
+		{
+			return;
+		}
+		
+		resize( Math.max( capacity, temperatures.length + (temperatures.length >> 1) ) );
+	}
+	
+	
+	//
+	// shrinks the arrays down to the rows in the table
+	//
+	public void trimToSize()
+	{
+		if ( size == temperatures.length )
+		{
+			return;
+		}
+		
+		resize( Math.max(size, 1) );
+	}
+	
+	
+	//
+	// (Helper Method)
+	// copies every column into arrays of the new capacity
+	//
+	private void resize(int capacity)
+	{
+		temperatures 	= Arrays.copyOf(temperatures, capacity);
+		years 			= Arrays.copyOf(years, capacity);
+		monthIds 		= Arrays.copyOf(monthIds, capacity);
+		countryIds 		= Arrays.copyOf(countryIds, capacity);
+		codeIds 		= Arrays.copyOf(codeIds, capacity);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// for each id in 'from', the id of the same value in 'to' ( added to 'to' if it's new )
+	//
+	private static int[] translate(StringDictionary from, StringDictionary to)
+	{
+		int[] ids = new int[ from.size() ];
+		
+		for ( int id = 0; id < ids.length; id++ )
+		{
+			ids[id] = to.add( from.get(id) );
+		}
+		
+		return ids;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// for each index in 'values', the id of that value in 'to' ( added to 'to' if it's new )
+	//
+	private static int[] translate(String[] values, StringDictionary to)
+	{
+		int[] ids = new int[ values.length ];
+		
+		for ( int i = 0; i < ids.length; i++ )
+		{
+			ids[i] = to.add( values[i] );
+		}
+		
+		return ids;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// a month id as stored in its byte column
+	//
+	private static byte toMonthId(int id)
+	{
+		if ( id >= MAX_MONTHS )
+		{
+			throw new IllegalArgumentException("More than " + MAX_MONTHS + " different months in the data");
+		}
+		
+		return (byte) id;
+	}
+	
+	
+	//
+	// (Helper Method)
+	//
+	private void checkIndex(int i)
+	{
+		if ( i < 0 || i >= size )
+		{
+			throw new IndexOutOfBoundsException("Row " + i + " of " + size);
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	//
+	private void checkRange(int from, int to)
+	{
+		if ( from < 0 || to > size || from > to )
+		{
+			throw new IndexOutOfBoundsException("Rows " + from + " to " + to + " of " + size);
+		}
+	}
+}
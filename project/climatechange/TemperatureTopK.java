@@ -0,0 +1,215 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+//
+// Top K operator for the B-1, B-2 and C-1 lists: one reading per country,
+// then the K lowest or K highest of those, sorted low to high
+//
+// readings are taken one at a time, only the best one so far for each country is kept
+// ( countries are told apart by their exact name ), so it's one pass over the data,
+// and getTop() puts them through a heap that never holds more than K,
+// memory is about K + the number of countries, not the size of the data
+//
+// "lowest" and "highest" are by the compareTo order
+// not thread safe, parts of the data can go through their own TopK on their own threads and be merged with addAll
+//
+
+public class TemperatureTopK
+{
+	private int 							k;
+	private boolean 						keepHighest;
+	private boolean 						topHighest;
+	
+	// by country name, the reading kept for it
+	private HashMap<String, ITemperature> 	bestByCountry;
+	
+	// by country id, the best row added with addRow, or -1
+	private TemperatureTable 				table;
+	private int[] 							bestRows;
+	
+	
+	//
+	// constructor takes in K, whether each country keeps its highest reading ( else its lowest ),
+	// and whether the K highest of those are returned ( else the K lowest )
+	//
+	// i.e. B-1 and B-2 keep the highest of each country and return the K highest,
+	// or keep the lowest and return the K lowest
+	//
+	public TemperatureTopK(int k, boolean keepHighest, boolean topHighest)
+	{
+		if ( k < 1 )
+		{
+			throw new IllegalArgumentException("Input for K, '" + k + "', must be at least 1, try again");
+		}
+		
+		this.k 				= k;
+		this.keepHighest 	= keepHighest;
+		this.topHighest 	= topHighest;
+		this.bestByCountry 	= new HashMap<String, ITemperature>();
+	}
+	
+	
+	//
+	// keeps the reading if it's the best one yet for its country
+	//
+	public void add(ITemperature t)
+	{
+		ITemperature best = bestByCountry.get( t.getCountry() );
+		
+		if ( best == null || isBetter( Temperature.compare(t, best), keepHighest ) )
+		{
+			bestByCountry.put( t.getCountry(), t );
+		}
+	}
+	
+	
+	//
+	// keeps a row of the table if it's the best one yet for its country
+	//
+	// rows are compared in the table by country id, only the best row of each country
+	// gets a view, in getTop() ( rows can only come from one table )
+	//
+	public void addRow(TemperatureTable table, int row)
+	{
+		if ( this.table == null )
+		{
+			this.table 		= table;
+			this.bestRows 	= new int[0];
+		}
+		
+		int id = table.getCountryId(row);
+		
+		if ( id >= bestRows.length )
+		{
+			int oldLength = bestRows.length;
+			
+			bestRows = Arrays.copyOf( bestRows, table.getCountryDictionary().size() );
+			Arrays.fill(bestRows, oldLength, bestRows.length, -1);
+		}
+		
+		if ( bestRows[id] == -1 || isBetter( table.compareRows(row, bestRows[id]), keepHighest ) )
+		{
+			bestRows[id] = row;
+		}
+	}
+	
+	
+	//
+	// keeps each country's best reading of another TopK as well ( one that took another part of the data )
+	// on a tie the reading already kept stays, so merging the parts in order gives the same as one TopK over all of them
+	//
+	public void addAll(TemperatureTopK other)
+	{
+		if ( other.table != null )
+		{
+			for ( int id = 0; id < other.bestRows.length; id++ )
+			{
+				if ( other.bestRows[id] != -1 )
+				{
+					addRow( other.table, other.bestRows[id] );
+				}
+			}
+		}
+		
+		for ( ITemperature t : other.bestByCountry.values() )
+		{
+			add(t);
+		}
+	}
+	
+	
+	//
+	// true if nothing has been added
+	//
+	public boolean isEmpty()
+	{
+		addBestRows();
+		
+		return bestByCountry.isEmpty();
+	}
+	
+	
+	//
+	// the K lowest or highest of the kept readings ( all of them if there are K or less ),
+	// sorted low to high
+	//
+	public ArrayList<ITemperature> getTop()
+	{
+		addBestRows();
+		
+		// the head is the one that goes first when the heap is over K,
+		// the highest when keeping the lowest, the lowest when keeping the highest
+		PriorityQueue<ITemperature> heap = new PriorityQueue<ITemperature>( k + 1, new Comparator<ITemperature>()
+		{
+			@Override
+			public int compare(ITemperature a, ITemperature b)
+			{
+				return topHighest ? Temperature.compare(a, b) : Temperature.compare(b, a);
+			}
+		});
+		
+		for ( ITemperature t : bestByCountry.values() )
+		{
+			heap.add(t);
+			
+			if ( heap.size() > k )
+			{
+				heap.poll();
+			}
+		}
+		
+		ArrayList<ITemperature> top = new ArrayList<ITemperature>( heap.size() );
+		
+		while ( ! heap.isEmpty() )
+		{
+			top.add( heap.poll() );
+		}
+		
+		// the K lowest come off the heap high to low
+		if ( ! topHighest )
+		{
+			Collections.reverse(top);
+		}
+		
+		return top;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// adds a view of each country's best row ( see addRow ), and starts them over
+	//
+	private void addBestRows()
+	{
+		if ( table == null )
+		{
+			return;
+		}
+		
+		for ( int id = 0; id < bestRows.length; id++ )
+		{
+			if ( bestRows[id] != -1 )
+			{
+				add( table.get( bestRows[id] ) );
+			}
+		}
+		
+		Arrays.fill(bestRows, -1);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// given a comparison of a new reading against the kept one, true if the new one should be kept
+	//
+	private static boolean isBetter(int comparison, boolean highest)
+	{
+		return highest ? comparison > 0 : comparison < 0;
+	}
+}
@@ -0,0 +1,186 @@
+package climatechange;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+//
+// Zone map of a TemperatureTable: its rows in fixed-size blocks ( rows [0, blockSize), [blockSize, 2 * blockSize) ... ),
+// each with its temperature range, year range, and which month ids and country ids it has
+//
+// a scan checks a block's statistics before its rows, and skips the whole block
+// if they show no row in it can match, i.e. a temperature range only reads the blocks
+// whose readings reach into it
+//
+// a block costs a few numbers and two small bit sets, next to thousands of rows
+// update() adds the rows appended since, the last block fills up before a new one starts
+// not thread safe
+//
+
+public class TemperatureZoneMap
+{
+	public static final int DEFAULT_BLOCK_SIZE = 4096;
+	
+	private TemperatureTable 	table;
+	private int 				blockSize;
+	private int 				mappedRows;
+	private ArrayList<Zone> 	zones;
+	
+	
+	//
+	// constructor takes in the table, and maps every row already in it in blocks of DEFAULT_BLOCK_SIZE
+	//
+	public TemperatureZoneMap(TemperatureTable table)
+	{
+		this(table, DEFAULT_BLOCK_SIZE);
+	}
+	
+	
+	//
+	// constructor takes in the table and the number of rows in a block
+	//
+	public TemperatureZoneMap(TemperatureTable table, int blockSize)
+	{
+		if ( blockSize < 1 )
+		{
+			throw new IllegalArgumentException("A block needs at least 1 row");
+		}
+		
+		this.table 		= table;
+		this.blockSize 	= blockSize;
+		this.mappedRows = 0;
+		this.zones 		= new ArrayList<Zone>();
+		
+		update();
+	}
+	
+	
+	//
+	// adds the rows appended to the table since the last update to their blocks' statistics
+	//
+	public void update()
+	{
+		int rows = table.size();
+		
+		// the new rows a block at a time
+		for ( int start = mappedRows; start < rows; )
+		{
+			int end = Math.min( rows, (start / blockSize + 1) * blockSize );
+			
+			if ( start % blockSize == 0 )
+			{
+				zones.add( new Zone() );
+			}
+			
+			zones.get( start / blockSize ).add(start, end);
+			
+			start = end;
+		}
+		
+		mappedRows = rows;
+	}
+	
+	
+	public int getBlockSize()
+	{
+		return blockSize;
+	}
+	
+	
+	// the block a row is in
+	public int getBlock(int row)
+	{
+		return row / blockSize;
+	}
+	
+	
+	public int getBlockCount()
+	{
+		return zones.size();
+	}
+	
+	
+	//
+	// false only if no row in the block has one of the country ids marked ( see StringDictionary.matchIgnoreCase )
+	//
+	public boolean mayContainCountry(int block, boolean[] countryIds)
+	{
+		BitSet countries = zones.get(block).countries;
+		
+		for ( int id = countries.nextSetBit(0); id >= 0 && id < countryIds.length; id = countries.nextSetBit(id + 1) )
+		{
+			if ( countryIds[id] )
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	
+	//
+	// false only if no row in the block has that month id
+	//
+	public boolean mayContainMonth(int block, int monthId)
+	{
+		return monthId >= 0 && zones.get(block).months.get(monthId);
+	}
+	
+	
+	//
+	// false only if no row in the block has that year
+	//
+	public boolean mayContainYear(int block, int year)
+	{
+		Zone zone = zones.get(block);
+		
+		return year >= zone.minYear && year <= zone.maxYear;
+	}
+	
+	
+	//
+	// false only if no row in the block has a temperature in [low, high] ( Celsius )
+	//
+	public boolean mayContainRange(int block, double low, double high)
+	{
+		Zone zone = zones.get(block);
+		
+		return ! ( zone.maxTemp < low || zone.minTemp > high );
+	}
+	
+	
+	//
+	// statistics of one block
+	//
+	private class Zone
+	{
+		private double 	minTemp 	= Double.POSITIVE_INFINITY;
+		private double 	maxTemp 	= Double.NEGATIVE_INFINITY;
+		private int 	minYear 	= Integer.MAX_VALUE;
+		private int 	maxYear 	= Integer.MIN_VALUE;
+		private BitSet 	months 		= new BitSet();
+		private BitSet 	countries 	= new BitSet();
+		
+		
+		//
+		// adds rows [from, to) of the table
+		//
+		public void add(int from, int to)
+		{
+			// a row without a temperature is never in a range, so it's left out of the temperature range
+			minTemp = Math.min( minTemp, table.getMinTemperature(from, to) );
+			maxTemp = Math.max( maxTemp, table.getMaxTemperature(from, to) );
+			
+			for ( int row = from; row < to; row++ )
+			{
+				int year = table.getYear(row);
+				
+				minYear = Math.min(minYear, year);
+				maxYear = Math.max(maxYear, year);
+				
+				months.set( table.getMonthId(row) );
+				countries.set( table.getCountryId(row) );
+			}
+		}
+	}
+}
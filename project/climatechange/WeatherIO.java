@@ -1,12 +1,15 @@
 package climatechange;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 //
 // class handles I/O ClimateAnalyzer and data files
@@ -16,10 +19,17 @@ import java.io.File;
 public class WeatherIO implements IWeatherIO
 {
 	
+	// report files stay open between writes
+	private ReportWriter reports;
+	
+	
 	//
-	// empty default constructor, nothing needs to be initialized
+	// default constructor, report files are only opened once they are written to
 	//
-	public WeatherIO(){}
+	public WeatherIO()
+	{
+		reports = new ReportWriter();
+	}
 	
 	
 	//
@@ -80,24 +90,272 @@ public class WeatherIO implements IWeatherIO
 	}
 	
 	
+	//
+	// Same result as readDataFromFile, but memory maps the file
+	// and parses temperature, year, month, country and code straight from the bytes
+	// ( see WeatherParser ), no Strings are built per line
+	//
+	@Override
+	public TemperatureTable readDataFromMappedFile (String fileName)
+	{
+		return readDataFromMappedFile(fileName, 1);
+	}
+	
+	
+	//
+	// Same as above, but the file is split at line boundaries
+	// and the pieces are parsed on 'parallelism' threads ( see MappedWeatherReader )
+	// rows come back in the same order as the serial read
+	//
+	@Override
+	public TemperatureTable readDataFromMappedFile (String fileName, int parallelism)
+	{
+		TemperatureTable data;
+		
+		try
+		{
+			data = new MappedWeatherReader(parallelism).read(fileName);
+		}
+		catch (IOException x)
+		{
+			System.out.println("Given file doesn't exist!");
+			x.printStackTrace();
+			data = null;
+		}
+		catch (NumberFormatException y)
+		{
+			System.out.println("Invalid file format! File is not in the expected format");
+			y.printStackTrace();
+			data = null;
+		}
+		catch (Exception z)
+		{
+			z.printStackTrace();
+			data = null;
+		}
+		
+		return data;
+	}
+	
+	
+	//
+	// Reads only the rows from byte 'offset' on and appends them to data
+	// ( see MappedWeatherReader ), for picking up rows appended to a file that was already read
+	// returns the offset to continue from next time, or -1 if the file couldn't be read
+	//
+	@Override
+	public long readDataFromMappedFile (String fileName, long offset, int parallelism, 
+			TemperatureTable data)
+	{
+		try
+		{
+			return new MappedWeatherReader(parallelism).read(fileName, offset, data);
+		}
+		catch (IOException x)
+		{
+			System.out.println(x.getMessage());
+		}
+		catch (NumberFormatException y)
+		{
+			System.out.println("Invalid file format! Appended data is not in the expected format");
+			y.printStackTrace();
+		}
+		catch (Exception z)
+		{
+			z.printStackTrace();
+		}
+		
+		return -1;
+	}
+	
+	
+	//
+	// Reads a gzipped data file ( .csv.gz ) directly, without unpacking it to disk
+	// decompressing and parsing run on separate threads ( see GzipWeatherReader )
+	//
+	@Override
+	public TemperatureTable readDataFromGzipFile (String fileName)
+	{
+		TemperatureTable data;
+		
+		try
+		{
+			data = new GzipWeatherReader().read(fileName);
+		}
+		catch (IOException x)
+		{
+			System.out.println("Given file doesn't exist or isn't gzipped!");
+			x.printStackTrace();
+			data = null;
+		}
+		catch (NumberFormatException y)
+		{
+			System.out.println("Invalid file format! File is not in the expected format");
+			y.printStackTrace();
+			data = null;
+		}
+		catch (Exception z)
+		{
+			z.printStackTrace();
+			data = null;
+		}
+		
+		return data;
+	}
+	
+	
+	//
+	// Loads a binary snapshot written by writeDataToSnapshot ( see WeatherSnapshot )
+	// no text is parsed, columns are read in bulk from a memory map
+	//
+	@Override
+	public TemperatureTable readDataFromSnapshot (String fileName)
+	{
+		TemperatureTable data;
+		
+		try
+		{
+			data = WeatherSnapshot.read(fileName);
+		}
+		catch (IOException x)
+		{
+			System.out.println("Given snapshot couldn't be read!");
+			x.printStackTrace();
+			data = null;
+		}
+		catch (Exception z)
+		{
+			z.printStackTrace();
+			data = null;
+		}
+		
+		return data;
+	}
+	
+	
+	//
+	// Saves the data as a binary snapshot, replacing the file if it exists
+	// returns false ( after printing the error ) if it couldn't be written
+	//
+	@Override
+	public boolean writeDataToSnapshot (String fileName, List<ITemperature> data)
+	{
+		try
+		{
+			WeatherSnapshot.write(data, fileName);
+		}
+		catch (IOException x)
+		{
+			System.out.println(x.getMessage());
+			return false;
+		}
+		catch (IllegalArgumentException y)
+		{
+			System.out.println(y.getMessage());
+			return false;
+		}
+		
+		return true;
+	}
+	
+	
+	//
+	// Streams the rows of the file as they are parsed, instead of building the whole list
+	// ( see MappedWeatherSpliterator ), only the current row is kept in memory
+	//
+	// the stream holds the file open, so it should be closed ( try-with-resources )
+	// returns null if the file can't be opened
+	//
+	@Override
+	public Stream<ITemperature> streamDataFromFile (String fileName)
+	{
+		try
+		{
+			final MappedWeatherSpliterator rows = new MappedWeatherSpliterator(fileName);
+			
+			Runnable closer = new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						rows.close();
+					}
+					catch (IOException x)
+					{
+						throw new UncheckedIOException(x);
+					}
+				}
+			};
+			
+			return StreamSupport.stream(rows, false).onClose(closer);
+		}
+		catch (IOException x)
+		{
+			System.out.println("Given file doesn't exist!");
+			x.printStackTrace();
+			return null;
+		}
+	}
+	
+	
+	//
+	// Hands every row of the file to the visitor, in file order, as it is parsed
+	// returns false ( after printing the error ) if the file couldn't be read completely
+	//
+	@Override
+	public boolean visitDataFromFile (String fileName, Consumer<? super ITemperature> visitor)
+	{
+		Stream<ITemperature> rows = streamDataFromFile(fileName);
+		
+		if ( rows == null )
+		{
+			return false;
+		}
+		
+		try
+		{
+			rows.forEach(visitor);
+		}
+		catch (UncheckedIOException x)
+		{
+			System.out.println("Given file couldn't be read!");
+			x.printStackTrace();
+			return false;
+		}
+		catch (NumberFormatException y)
+		{
+			System.out.println("Invalid file format! File is not in the expected format");
+			y.printStackTrace();
+			return false;
+		}
+		catch (Exception z)
+		{
+			z.printStackTrace();
+			return false;
+		}
+		finally
+		{
+			rows.close();
+		}
+		
+		return true;
+	}
+	
+	
 	//
 	// if the filename doesn't exist, creates a new file and and writes to it
 	// else appends the subject text to it
-	// append implementation from :
-	// https://docs.oracle.com/javase/7/docs/api/java/io/FileWriter.html
+	// the file stays open and buffered between calls ( see ReportWriter ),
+	// call flush() or close() to make sure everything is on disk
 	//
 	@Override
 	public void writeSubjectHeaderInFile(String filename, String subject) 
 	{	
 		try 
 		{
-			FileWriter 	fr 	= new FileWriter(filename, true);
-			PrintWriter pw 	= new PrintWriter(fr);
-			
-			pw.println(subject);
-			
-			pw.close();
-			fr.close();
+			reports.writeLines(filename, subject);
 		}
 		catch (IOException x)
 		{
@@ -108,6 +366,7 @@ public class WeatherIO implements IWeatherIO
 	
 	//
 	// writes to the file, appending whatever data is given
+	// buffered the same way as writeSubjectHeaderInFile
 	//
 	@Override
 	public void writeDataToFile(String filename, String topic,
@@ -115,17 +374,51 @@ public class WeatherIO implements IWeatherIO
 	{
 		try 
 		{
-			FileWriter 	fw 	= new FileWriter(filename, true);
-			PrintWriter pw 	= new PrintWriter(fw);
-			
-			pw.println(topic);
-			for(ITemperature t : theWeatherList)
-			{
-				pw.println(t);
-			}
-
-			pw.close();
-			fw.close();
+			reports.writeRows(filename, topic, theWeatherList);
+		}
+		catch (IOException x)
+		{
+			System.out.println(x.getMessage());
+		}
+	}
+	
+	
+	//
+	// when true, task files are written gzipped with .gz added to their names
+	//
+	@Override
+	public void setCompressReports(boolean compress)
+	{
+		reports.setCompressAll(compress);
+	}
+	
+	
+	//
+	// writes out everything still buffered for the report files
+	//
+	@Override
+	public void flush()
+	{
+		try 
+		{
+			reports.flush();
+		}
+		catch (IOException x)
+		{
+			System.out.println(x.getMessage());
+		}
+	}
+	
+	
+	//
+	// flushes and closes every report file
+	//
+	@Override
+	public void close()
+	{
+		try 
+		{
+			reports.close();
 		}
 		catch (IOException x)
 		{
@@ -0,0 +1,367 @@
+package climatechange;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//
+// Byte level parser for the weather data file format:
+// Temperature, Year, Month_Avg, Country, Country_Code
+//
+// works directly on a ByteBuffer ( mapped or heap ) without building a String per line,
+// produces the same values as split(","), trim(), Double.parseDouble and Integer.parseInt would
+//
+// not thread safe, each thread should use its own parser
+//
+
+public class WeatherParser
+{
+	// largest long mantissa that is still exact as a double ( 2^53 )
+	private static final long 		MAX_EXACT_MANTISSA 	= 1L << 53;
+	
+	// powers of ten that are exact as doubles
+	private static final double[] 	POWERS_OF_TEN 		= {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	
+	private ByteStringPool pool;
+	
+	
+	//
+	// default constructor, month names are pooled as the instances in ClimateAnalyzer.months
+	//
+	public WeatherParser()
+	{
+		pool = new ByteStringPool();
+		
+		for ( String month : ClimateAnalyzer.months )
+		{
+			pool.seed(month);
+		}
+	}
+	
+	
+	//
+	// returns the index just past the first line terminator in [start, end)
+	// used for skipping the column header, returns end if there is no terminator
+	//
+	public int skipLine(ByteBuffer buf, int start, int end)
+	{
+		for ( int i = start; i < end; i++ )
+		{
+			byte b = buf.get(i);
+			
+			if ( b == '\n' )
+			{
+				return i + 1;
+			}
+			else if ( b == '\r' )
+			{
+				return ( i + 1 < end && buf.get(i + 1) == '\n' ) ? i + 2 : i + 1;
+			}
+		}
+		
+		return end;
+	}
+	
+	
+	//
+	// parses every complete line in [start, end) and hands each row to the sink
+	//
+	// if endOfInput is false, a trailing line without a terminator is left alone
+	// returns the index just past the last line that was parsed,
+	// so the caller knows where to resume with the next chunk
+	//
+	// throws NumberFormatException for unreadable numbers
+	// and IllegalArgumentException for lines that don't have all 5 fields
+	//
+	public int parse(ByteBuffer buf, int start, int end, boolean endOfInput, IRowSink sink)
+	{
+		int lineStart = start;
+		
+		while ( lineStart < end )
+		{
+			int next = parseOne(buf, lineStart, end, endOfInput, sink);
+			
+			if ( next == lineStart )
+			{
+				return lineStart;
+			}
+			
+			lineStart = next;
+		}
+		
+		return lineStart;
+	}
+	
+	
+	//
+	// parses only the line starting at start and hands its row to the sink
+	// returns the index where the next line starts,
+	// or start if the line isn't complete yet ( see parse ) and nothing was handed over
+	//
+	public int parseOne(ByteBuffer buf, int start, int end, boolean endOfInput, IRowSink sink)
+	{
+		int lineEnd = start;
+		
+		while ( lineEnd < end && buf.get(lineEnd) != '\n' && buf.get(lineEnd) != '\r' )
+		{
+			lineEnd++;
+		}
+		
+		int next;
+		
+		if ( lineEnd == end )
+		{
+			// no terminator, only parse it if nothing else is coming
+			if ( ! endOfInput || start == end )
+			{
+				return start;
+			}
+			
+			next = end;
+		}
+		else if ( buf.get(lineEnd) == '\r' )
+		{
+			// a '\r' as the last byte might be the first half of a '\r\n' in the next chunk
+			if ( lineEnd + 1 == end && ! endOfInput )
+			{
+				return start;
+			}
+			
+			next = ( lineEnd + 1 < end && buf.get(lineEnd + 1) == '\n' ) ? lineEnd + 2 : lineEnd + 1;
+		}
+		else
+		{
+			next = lineEnd + 1;
+		}
+		
+		parseLine(buf, start, lineEnd, sink);
+		
+		return next;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// splits one line [start, end) on commas and parses each field,
+	// anything after the 5th field is ignored, like the String based reader
+	//
+	private void parseLine(ByteBuffer buf, int start, int end, IRowSink sink)
+	{
+		int tempEnd 	= indexOfComma(buf, start, end);
+		int yearEnd 	= indexOfComma(buf, tempEnd + 1, end);
+		int monthEnd 	= indexOfComma(buf, yearEnd + 1, end);
+		int countryEnd 	= indexOfComma(buf, monthEnd + 1, end);
+		
+		if ( countryEnd >= end )
+		{
+			throw new IllegalArgumentException("Line is missing fields, expected 5 comma separated values");
+		}
+		
+		int codeEnd = indexOfComma(buf, countryEnd + 1, end);
+		
+		double 	temperature = parseDouble(buf, start, tempEnd);
+		int 	year 		= parseInt(buf, tempEnd + 1, yearEnd);
+		String 	month 		= parseString(buf, yearEnd + 1, monthEnd);
+		String 	country 	= parseString(buf, monthEnd + 1, countryEnd);
+		String 	code 		= parseString(buf, countryEnd + 1, codeEnd);
+		
+		sink.acceptRow(temperature, year, month, country, code);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// returns the index of the next comma, or end if there isn't one
+	//
+	private static int indexOfComma(ByteBuffer buf, int start, int end)
+	{
+		int i = start;
+		
+		while ( i < end && buf.get(i) != ',' )
+		{
+			i++;
+		}
+		
+		return i;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// trims the field the way String.trim does and returns the pooled String for it
+	//
+	private String parseString(ByteBuffer buf, int start, int end)
+	{
+		int first 	= trimStart(buf, start, end);
+		int last 	= trimEnd(buf, first, end);
+		
+		return pool.get(buf, first, last);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// parses a trimmed, optionally signed integer, same rules as Integer.parseInt
+	//
+	private static int parseInt(ByteBuffer buf, int start, int end)
+	{
+		int first 	= trimStart(buf, start, end);
+		int last 	= trimEnd(buf, first, end);
+		
+		int 	i 			= first;
+		boolean negative 	= false;
+		
+		if ( i < last && ( buf.get(i) == '-' || buf.get(i) == '+' ) )
+		{
+			negative = buf.get(i) == '-';
+			i++;
+		}
+		
+		if ( i == last )
+		{
+			throw new NumberFormatException("For input string: \"" + ascii(buf, first, last) + "\"");
+		}
+		
+		long value = 0;
+		
+		for ( ; i < last; i++ )
+		{
+			int digit = buf.get(i) - '0';
+			
+			if ( digit < 0 || digit > 9 )
+			{
+				throw new NumberFormatException("For input string: \"" + ascii(buf, first, last) + "\"");
+			}
+			
+			value = value * 10 + digit;
+			
+			if ( value > (long) Integer.MAX_VALUE + 1 )
+			{
+				throw new NumberFormatException("For input string: \"" + ascii(buf, first, last) + "\"");
+			}
+		}
+		
+		value = negative ? -value : value;
+		
+		if ( value > Integer.MAX_VALUE )
+		{
+			throw new NumberFormatException("For input string: \"" + ascii(buf, first, last) + "\"");
+		}
+		
+		return (int) value;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// parses a trimmed decimal number like "-12.3456"
+	//
+	// when the digits fit in 2^53 and there are at most 22 decimal places,
+	// mantissa / 10^places is a single correctly rounded division of two exact doubles,
+	// which is the same result Double.parseDouble gives
+	// anything else ( exponents, long mantissas, NaN ... ) falls back to Double.parseDouble
+	//
+	private static double parseDouble(ByteBuffer buf, int start, int end)
+	{
+		int first 	= trimStart(buf, start, end);
+		int last 	= trimEnd(buf, first, end);
+		
+		int 	i 			= first;
+		boolean negative 	= false;
+		
+		if ( i < last && ( buf.get(i) == '-' || buf.get(i) == '+' ) )
+		{
+			negative = buf.get(i) == '-';
+			i++;
+		}
+		
+		long 	mantissa 	= 0;
+		int 	digits 		= 0;
+		int 	places 		= 0;
+		boolean seenPoint 	= false;
+		boolean exact 		= true;
+		
+		for ( ; i < last && exact; i++ )
+		{
+			byte b = buf.get(i);
+			
+			if ( b >= '0' && b <= '9' )
+			{
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				
+				if ( seenPoint )
+				{
+					places++;
+				}
+				
+				exact = mantissa <= MAX_EXACT_MANTISSA && places < POWERS_OF_TEN.length;
+			}
+			else if ( b == '.' && ! seenPoint )
+			{
+				seenPoint = true;
+			}
+			else
+			{
+				exact = false;
+			}
+		}
+		
+		if ( ! exact || digits == 0 )
+		{
+			return Double.parseDouble( ascii(buf, first, last) );
+		}
+		
+		double value = (double) mantissa / POWERS_OF_TEN[places];
+		
+		return negative ? -value : value;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// first index in [start, end) that isn't whitespace/control ( <= ' ' )
+	//
+	private static int trimStart(ByteBuffer buf, int start, int end)
+	{
+		while ( start < end && (buf.get(start) & 0xff) <= ' ' )
+		{
+			start++;
+		}
+		
+		return start;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// index just past the last non whitespace byte in [start, end)
+	//
+	private static int trimEnd(ByteBuffer buf, int start, int end)
+	{
+		while ( end > start && (buf.get(end - 1) & 0xff) <= ' ' )
+		{
+			end--;
+		}
+		
+		return end;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// builds a String from the bytes, only used for fallbacks and error messages
+	//
+	private static String ascii(ByteBuffer buf, int start, int end)
+	{
+		byte[] bytes = new byte[end - start];
+		
+		for ( int i = 0; i < bytes.length; i++ )
+		{
+			bytes[i] = buf.get(start + i);
+		}
+		
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,409 @@
+package climatechange;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+//
+// Binary, column based snapshot of a weather data set
+// loading one is a handful of bulk reads instead of parsing text
+//
+// layout ( little endian ):
+// [magic "CLIMSNAP"][version][row count]
+// [country count]( [length][UTF-8 bytes] )...  dictionary, ids are positions in it
+// [code count]( [length][UTF-8 bytes] )...
+// padding up to a multiple of 8
+// double[rows] temperatures, int[rows] years, int[rows] country ids, int[rows] code ids,
+// byte[rows] month ordinals ( index into ClimateAnalyzer.months )
+//
+// each column is mapped on its own, so a column can't be bigger than Integer.MAX_VALUE bytes
+//
+// usage as a conversion tool:
+// java climatechange.WeatherSnapshot data/world_temp_2000-2016.csv data/world_temp_2000-2016.snap
+//
+
+public class WeatherSnapshot
+{
+	private static final byte[] MAGIC 			= "CLIMSNAP".getBytes(StandardCharsets.US_ASCII);
+	private static final int 	VERSION 		= 1;
+	private static final int 	WRITE_BUFFER 	= 1 << 20;
+	
+	
+	//
+	// checks the first bytes of the file for the snapshot magic number
+	// returns false for anything that isn't a snapshot ( i.e. a csv ) or can't be read
+	//
+	public static boolean isSnapshot(String fileName)
+	{
+		Path path = Paths.get(fileName);
+		
+		if ( ! Files.isRegularFile(path) )
+		{
+			return false;
+		}
+		
+		try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) )
+		{
+			ByteBuffer head = ByteBuffer.allocate(MAGIC.length);
+			
+			while ( head.hasRemaining() && channel.read(head) >= 0 );
+			
+			return ! head.hasRemaining() && head.flip().equals( ByteBuffer.wrap(MAGIC) );
+		}
+		catch (IOException x)
+		{
+			return false;
+		}
+	}
+	
+	
+	//
+	// writes the data to fileName as a snapshot, replacing whatever was there
+	// months have to be one of ClimateAnalyzer.months
+	//
+	// it's written to a temporary file next to fileName first, then moved over it,
+	// so if anything goes wrong ( i.e. a month that can't be stored ) the old file is left as it was
+	//
+	public static void write(List<ITemperature> data, String fileName) throws IOException
+	{
+		LinkedHashMap<String, Integer> 	countries 		= new LinkedHashMap<String, Integer>();
+		LinkedHashMap<String, Integer> 	codes 			= new LinkedHashMap<String, Integer>();
+		int 							rows 			= data.size();
+		byte[] 							monthOrdinals 	= new byte[rows];
+		int 							row 			= 0;
+		
+		// every month is checked before anything is written
+		for ( ITemperature t : data )
+		{
+			monthOrdinals[row++] = (byte) monthOrdinal( t.getMonth() );
+			
+			if ( ! countries.containsKey( t.getCountry() ) )
+			{
+				countries.put( t.getCountry(), countries.size() );
+			}
+			
+			if ( ! codes.containsKey( t.getCountry3LetterCode() ) )
+			{
+				codes.put( t.getCountry3LetterCode(), codes.size() );
+			}
+		}
+		
+		Path target 	= Paths.get(fileName).toAbsolutePath();
+		Path temporary 	= Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		
+		try
+		{
+			write(data, countries, codes, monthOrdinals, temporary);
+			
+			try
+			{
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException x)
+			{
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(temporary);
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// writes the snapshot to the file at path, with the dictionaries and months worked out by write() above
+	//
+	private static void write(List<ITemperature> data, LinkedHashMap<String, Integer> countries,
+			LinkedHashMap<String, Integer> codes, byte[] monthOrdinals, Path path) throws IOException
+	{
+		int rows = data.size();
+		
+		try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING) )
+		{
+			ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+			
+			out.put(MAGIC).putInt(VERSION).putInt(rows);
+			writeDictionary(channel, out, countries);
+			writeDictionary(channel, out, codes);
+			
+			ensureRoom(channel, out, 8);
+			
+			long written = channel.position() + out.position();
+			
+			while ( written % 8 != 0 )
+			{
+				out.put( (byte) 0 );
+				written++;
+			}
+			
+			for ( ITemperature t : data )
+			{
+				ensureRoom(channel, out, 8);
+				out.putDouble( t.getTemperature(false) );
+			}
+			
+			for ( ITemperature t : data )
+			{
+				ensureRoom(channel, out, 4);
+				out.putInt( t.getYear() );
+			}
+			
+			for ( ITemperature t : data )
+			{
+				ensureRoom(channel, out, 4);
+				out.putInt( countries.get( t.getCountry() ) );
+			}
+			
+			for ( ITemperature t : data )
+			{
+				ensureRoom(channel, out, 4);
+				out.putInt( codes.get( t.getCountry3LetterCode() ) );
+			}
+			
+			for ( byte month : monthOrdinals )
+			{
+				ensureRoom(channel, out, 1);
+				out.put(month);
+			}
+			
+			drain(channel, out);
+		}
+	}
+	
+	
+	//
+	// loads a snapshot written by write()
+	// the dictionaries are decoded once, and the columns are read straight into the table's arrays
+	//
+	public static TemperatureTable read(String fileName) throws IOException
+	{
+		try ( FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ) )
+		{
+			long 		headerSize 	= Math.min(channel.size(), Integer.MAX_VALUE);
+			ByteBuffer 	header 		= channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize)
+											.order(ByteOrder.LITTLE_ENDIAN);
+			
+			byte[] magic = new byte[MAGIC.length];
+			header.get(magic);
+			
+			if ( ! ByteBuffer.wrap(magic).equals( ByteBuffer.wrap(MAGIC) ) )
+			{
+				throw new IOException(fileName + " is not a weather snapshot");
+			}
+			
+			int version = header.getInt();
+			
+			if ( version != VERSION )
+			{
+				throw new IOException("Unsupported snapshot version " + version);
+			}
+			
+			int 		rows 		= header.getInt();
+			String[] 	countries 	= readDictionary(header);
+			String[] 	codes 		= readDictionary(header);
+			
+			long position = header.position();
+			
+			while ( position % 8 != 0 )
+			{
+				position++;
+			}
+			
+			double[] 	temperatures 	= new double[rows];
+			int[] 		years 			= new int[rows];
+			int[] 		countryIds 		= new int[rows];
+			int[] 		codeIds 		= new int[rows];
+			byte[] 		monthOrdinals 	= new byte[rows];
+			
+			mapColumn(channel, position, rows * 8L).asDoubleBuffer().get(temperatures);
+			position += rows * 8L;
+			
+			mapColumn(channel, position, rows * 4L).asIntBuffer().get(years);
+			position += rows * 4L;
+			
+			mapColumn(channel, position, rows * 4L).asIntBuffer().get(countryIds);
+			position += rows * 4L;
+			
+			mapColumn(channel, position, rows * 4L).asIntBuffer().get(codeIds);
+			position += rows * 4L;
+			
+			mapColumn(channel, position, rows).get(monthOrdinals);
+			
+			// the columns become the table's own, only the dictionaries' entries are looked up
+			TemperatureTable data = new TemperatureTable(1);
+			
+			data.addColumns(temperatures, years, ClimateAnalyzer.months, monthOrdinals, 
+					countries, countryIds, codes, codeIds);
+			
+			return data;
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// index of the month in ClimateAnalyzer.months
+	//
+	private static int monthOrdinal(String month)
+	{
+		for ( int i = 0; i < ClimateAnalyzer.months.length; i++ )
+		{
+			if ( ClimateAnalyzer.months[i].equals(month) )
+			{
+				return i;
+			}
+		}
+		
+		throw new IllegalArgumentException("Month '" + month + "' can't be stored in a snapshot");
+	}
+	
+	
+	//
+	// (Helper Method)
+	// writes the dictionary entries in id order
+	//
+	private static void writeDictionary(FileChannel channel, ByteBuffer out,
+			LinkedHashMap<String, Integer> dictionary) throws IOException
+	{
+		ensureRoom(channel, out, 4);
+		out.putInt( dictionary.size() );
+		
+		for ( String value : dictionary.keySet() )
+		{
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			
+			ensureRoom(channel, out, 4 + bytes.length);
+			
+			// an entry bigger than the whole buffer goes straight to the channel
+			if ( out.remaining() < 4 + bytes.length )
+			{
+				ByteBuffer entry = ByteBuffer.wrap(bytes);
+				
+				out.putInt(bytes.length);
+				drain(channel, out);
+				
+				while ( entry.hasRemaining() )
+				{
+					channel.write(entry);
+				}
+			}
+			else
+			{
+				out.putInt(bytes.length).put(bytes);
+			}
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// reads a dictionary written by writeDictionary, entry i is id i
+	//
+	private static String[] readDictionary(ByteBuffer in)
+	{
+		String[] values = new String[ in.getInt() ];
+		
+		for ( int i = 0; i < values.length; i++ )
+		{
+			byte[] bytes = new byte[ in.getInt() ];
+			in.get(bytes);
+			
+			values[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		
+		return values;
+	}
+	
+	
+	//
+	// (Helper Method)
+	// maps one column as a little endian buffer
+	//
+	private static ByteBuffer mapColumn(FileChannel channel, long position, long length) throws IOException
+	{
+		if ( length > Integer.MAX_VALUE )
+		{
+			throw new IOException("Snapshot column of " + length + " bytes is too big to map");
+		}
+		
+		MappedByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		
+		return column.order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	
+	//
+	// (Helper Method)
+	// writes out the buffer when there isn't room for 'bytes' more bytes
+	//
+	private static void ensureRoom(FileChannel channel, ByteBuffer out, int bytes) throws IOException
+	{
+		if ( out.remaining() < bytes )
+		{
+			drain(channel, out);
+		}
+	}
+	
+	
+	//
+	// (Helper Method)
+	// writes everything in the buffer to the channel and clears it
+	//
+	private static void drain(FileChannel channel, ByteBuffer out) throws IOException
+	{
+		out.flip();
+		
+		while ( out.hasRemaining() )
+		{
+			channel.write(out);
+		}
+		
+		out.clear();
+	}
+	
+	
+	//
+	// converts a csv data file to a snapshot
+	// args[0] = csv file, args[1] = snapshot file
+	//
+	public static void main(String[] args)
+	{
+		if ( args.length != 2 )
+		{
+			System.out.println("Usage: java climatechange.WeatherSnapshot <data file.csv> <snapshot file>");
+			return;
+		}
+		
+		TemperatureTable data = new WeatherIO().readDataFromMappedFile( args[0],
+				Runtime.getRuntime().availableProcessors() );
+		
+		if ( data == null )
+		{
+			return;
+		}
+		
+		try
+		{
+			write(data, args[1]);
+			System.out.println("Wrote " + data.size() + " rows to " + args[1]);
+		}
+		catch (IOException x)
+		{
+			System.out.println(x.getMessage());
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package climatechange;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+//
+// The column kernels on the JDK's incubating Vector API, a whole vector of doubles per step
+// ( 4 with AVX2, 8 with AVX-512, see ITemperatureKernels for what each one returns )
+//
+// kept out of the climatechange source folder, since it only compiles and runs with the incubator module:
+// 		javac --add-modules jdk.incubator.vector -cp <classes> -d <classes> vector/climatechange/*.java
+// 		java --add-modules jdk.incubator.vector ...
+// TemperatureKernels loads it by name and falls back to ScalarTemperatureKernels when it isn't there,
+// or the module isn't enabled
+//
+// every kernel gives the same answers as the scalar ones, the tail of a range that doesn't fill a vector
+// goes through them
+//
+
+public class VectorTemperatureKernels implements ITemperatureKernels
+{
+	private static final VectorSpecies<Double> 	SPECIES 		= DoubleVector.SPECIES_PREFERRED;
+	
+	// the same number of lanes as SPECIES, lane i holds 1L << i
+	private static final VectorSpecies<Long> 	BIT_SPECIES 	= SPECIES.withLanes(long.class);
+	private static final LongVector 			LANE_BITS 		= LongVector.broadcast(BIT_SPECIES, 1L)
+			.lanewise( VectorOperators.LSHL, LongVector.zero(BIT_SPECIES).addIndex(1) );
+	
+	private ScalarTemperatureKernels 			scalar 			= new ScalarTemperatureKernels();
+	
+	
+	//
+	// each 64 bit word is filled a vector at a time, a vector's lanes are its next bits
+	// ( a species has at most 64 lanes and 64 is a multiple of it, so a vector never runs over a word )
+	// the lanes in range keep their bit of LANE_BITS and are ORed together,
+	// VectorMask.toLong() would do the same but isn't compiled to SIMD instructions on JDK 17
+	//
+	@Override
+	public int getRangeMask(double[] values, int from, int to, double low, double high, long[] mask)
+	{
+		int lanes = SPECIES.length();
+		int count = 0;
+		
+		for ( int word = 0; from + (word << 6) < to; word++ )
+		{
+			int 	start 	= from + (word << 6);
+			int 	end 	= Math.min(start + 64, to);
+			long 	bits 	= 0;
+			int 	i 		= start;
+			
+			for ( ; i + lanes <= end; i += lanes )
+			{
+				DoubleVector 		value 	= DoubleVector.fromArray(SPECIES, values, i);
+				VectorMask<Double> 	inRange = value.compare(VectorOperators.GE, low)
+						.and( value.compare(VectorOperators.LE, high) );
+				
+				bits |= LongVector.zero(BIT_SPECIES).blend( LANE_BITS, inRange.cast(BIT_SPECIES) )
+						.reduceLanes(VectorOperators.OR) << (i - start);
+			}
+			
+			for ( ; i < end; i++ )
+			{
+				double value = values[i];
+				
+				bits |= ( ( value >= low & value <= high ) ? 1L : 0L ) << (i - start);
+			}
+			
+			mask[word] 	= bits;
+			count 		+= Long.bitCount(bits);
+		}
+		
+		return count;
+	}
+	
+	
+	//
+	// a lane only takes a value lower than it has ( NaN never is, and -0.0 isn't lower than 0.0 ),
+	// then the lanes and the tail are folded together the same way
+	//
+	@Override
+	public double getMin(double[] values, int from, int to)
+	{
+		DoubleVector 	min 	= DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+		int 			i 		= from;
+		
+		for ( ; i + SPECIES.length() <= to; i += SPECIES.length() )
+		{
+			DoubleVector value = DoubleVector.fromArray(SPECIES, values, i);
+			
+			min = min.blend( value, value.compare(VectorOperators.LT, min) );
+		}
+		
+		return Math.min( scalar.getMin(min.toArray(), 0, SPECIES.length()), scalar.getMin(values, i, to) );
+	}
+	
+	
+	@Override
+	public double getMax(double[] values, int from, int to)
+	{
+		DoubleVector 	max 	= DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+		int 			i 		= from;
+		
+		for ( ; i + SPECIES.length() <= to; i += SPECIES.length() )
+		{
+			DoubleVector value = DoubleVector.fromArray(SPECIES, values, i);
+			
+			max = max.blend( value, value.compare(VectorOperators.GT, max) );
+		}
+		
+		return Math.max( scalar.getMax(max.toArray(), 0, SPECIES.length()), scalar.getMax(values, i, to) );
+	}
+	
+	
+	//
+	// a multiply then an add, never fused, so each value rounds the same as Temperature.getTemperature(true)
+	//
+	@Override
+	public void toFahrenheit(double[] values, int from, int to, double[] out, int outFrom)
+	{
+		int i = from;
+		
+		for ( ; i + SPECIES.length() <= to; i += SPECIES.length() )
+		{
+			DoubleVector.fromArray(SPECIES, values, i).mul(9.0/5.0).add(32.0).intoArray(out, outFrom + i - from);
+		}
+		
+		scalar.toFahrenheit(values, i, to, out, outFrom + i - from);
+	}
+}